@@ -0,0 +1,102 @@
+package com.juant.roxxy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.juant.roxxy.core.ApiVerticle;
+import com.juant.roxxy.core.Shard;
+import com.juant.roxxy.core.ShardRouter;
+import com.juant.roxxy.core.WarmUpRequest;
+import com.juant.roxxy.handler.NeivorEventHandler;
+import com.juant.roxxy.handler.NeivorHandler;
+import com.juant.roxxy.query.NeivorQueries;
+import com.juant.roxxy.service.DepartmentBalanceCheck;
+import com.juant.roxxy.service.NeivorService;
+import com.juant.roxxy.service.PaymentOrderExpiry;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+
+/**
+ * Component designed to run inside Vertx. Contains web service settings for payment generation for Neivor
+ * and serves Neivor payment orders to Roxxy over the event bus. Payment order state changes are pushed to subscribed
+ * clients (see NeivorEventHandler), stale unpaid payment orders are archived (see PaymentOrderExpiry) and the department
+ * balances are recomputed (see DepartmentBalanceCheck).
+ * The Neivor database can be split in shards by department number, listed in neivor.shards (see ApiVerticle.createShards).
+ * @author Juan Tzun
+ *
+ */
+public class NeivorApiVerticle extends ApiVerticle {
+
+	private NeivorHandler neivorHandler;
+	private NeivorService neivorService;
+	private final List<PaymentOrderExpiry> paymentOrderExpiries = new ArrayList<>();
+	private final List<DepartmentBalanceCheck> departmentBalanceChecks = new ArrayList<>();
+
+	@Override
+	protected String getConfigPrefix() {
+		return "neivor";
+	}
+
+	@Override
+	protected String getMountPoint() {
+		return "/api/neivor/";
+	}
+
+	@Override
+	protected Router createAPISubRouter() {
+		ShardRouter neivorShards = createShards("neivor");
+
+		neivorService = new NeivorService(neivorShards, config());
+		neivorService.register(vertx);
+
+		for(Shard shard : neivorShards.getShards()) {
+			PaymentOrderExpiry paymentOrderExpiry = new PaymentOrderExpiry(shard, config());
+			paymentOrderExpiries.add(paymentOrderExpiry);
+
+			DepartmentBalanceCheck departmentBalanceCheck = new DepartmentBalanceCheck(shard, config());
+			departmentBalanceChecks.add(departmentBalanceCheck);
+
+			//The training run does not start the jobs
+			if(!isTraining()) {
+				paymentOrderExpiry.register(vertx);
+				departmentBalanceCheck.register(vertx);
+			}
+		}
+
+		NeivorEventHandler neivorEventHandler = new NeivorEventHandler(config());
+		neivorEventHandler.register(vertx);
+
+		neivorHandler = new NeivorHandler(neivorShards, neivorEventHandler, getKeyedMutex("neivor.order"), config());
+		return neivorHandler.getAPISubRouter(vertx);
+	}
+
+	@Override
+	protected List<String> getStatements(String database) {
+		return NeivorQueries.ALL;
+	}
+
+	@Override
+	protected void applyConfig(JsonObject config) {
+		neivorHandler.configure(config);
+		neivorService.configure(config);
+		for(PaymentOrderExpiry paymentOrderExpiry : paymentOrderExpiries) {
+			paymentOrderExpiry.configure(config);
+		}
+		for(DepartmentBalanceCheck departmentBalanceCheck : departmentBalanceChecks) {
+			departmentBalanceCheck.configure(config);
+		}
+	}
+
+	/**
+	 * Request rejected by body validation, it runs the API code without touching the database
+	 */
+	@Override
+	protected List<WarmUpRequest> getWarmUpRequests() {
+		return Arrays.asList(
+				new WarmUpRequest(HttpMethod.GET, "/", null),
+				new WarmUpRequest(HttpMethod.POST, "/api/neivor/generate-payment-order", null));
+	}
+}
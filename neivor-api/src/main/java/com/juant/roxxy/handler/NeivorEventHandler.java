@@ -0,0 +1,195 @@
+package com.juant.roxxy.handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.juant.roxxy.core.NeivorAddress;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Pushes payment order state changes to clients with Server-Sent Events, so they do not need to poll
+ * GET /api/neivor/payment-order-state/:code. Connections opened by NeivorHandler.subscribePaymentOrderEvents receive
+ * an orden event with {codigo, pagado, departamento} for every change of their codes or departments published on
+ * NeivorAddress.ORDEN_PAGO_CAMBIO.
+ * The following keys are available:
+ * <ul>
+ * 	<li><b>neivor.events.buffer.size</b>: bytes waiting to be sent to a connection, a slower client is disconnected
+ * 	and has to subscribe again (default 8192)</li>
+ * 	<li><b>neivor.events.max.subscriptions</b>: codes and departments a connection can subscribe to (default 100)</li>
+ * 	<li><b>neivor.events.heartbeat</b>: milliseconds between keep alive comments (default 15000)</li>
+ * </ul>
+ * @author Juan Tzun
+ *
+ */
+public class NeivorEventHandler {
+
+	private static final Buffer HEARTBEAT = Buffer.buffer(":\n\n");
+
+	//Connections by payment order code and by department
+	private final Map<String, Set<HttpServerResponse>> codigos = new HashMap<>();
+	private final Map<String, Set<HttpServerResponse>> departamentos = new HashMap<>();
+	private final Set<HttpServerResponse> connections = new HashSet<>();
+
+	private int bufferSize;
+	private int maxSubscriptions;
+	private long heartbeat;
+
+	/**
+	 * Constructor with parameters.
+	 * @param config Application config
+	 */
+	public NeivorEventHandler(JsonObject config) {
+		this.configure(config);
+	}
+
+	/**
+	 * Reads the neivor.events.* settings, the buffer size applies to new connections
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		this.bufferSize = config.getInteger("neivor.events.buffer.size", 8192);
+		this.maxSubscriptions = config.getInteger("neivor.events.max.subscriptions", 100);
+		this.heartbeat = config.getLong("neivor.events.heartbeat", 15000L);
+	}
+
+	/**
+	 * Registers the consumer for the state changes and the keep alive timer
+	 * @param vertx The entry point into the Vert.x Core API.
+	 */
+	public void register(Vertx vertx) {
+		vertx.eventBus().<JsonObject>consumer(NeivorAddress.ORDEN_PAGO_CAMBIO, this::dispatch);
+		this.scheduleHeartbeat(vertx);
+	}
+
+	/**
+	 * @param subscriptions Codes and departments requested by a connection
+	 * @return true if a connection can subscribe to them
+	 */
+	public boolean isValid(int subscriptions) {
+		return subscriptions>0 && subscriptions<=maxSubscriptions;
+	}
+
+	/**
+	 * Opens an event stream for the codes and departments
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 * @param codigosRequest Payment order codes
+	 * @param departamentosRequest Departments
+	 */
+	public void subscribe(RoutingContext routingContext, List<String> codigosRequest, List<String> departamentosRequest) {
+		//Events are sent as they happen, never compressed
+		HttpServerResponse response = routingContext.response()
+				.setChunked(true)
+				.setWriteQueueMaxSize(bufferSize)
+				.putHeader(HttpHeaders.CONTENT_TYPE, "text/event-stream")
+				.putHeader(HttpHeaders.CACHE_CONTROL, "no-cache")
+				.putHeader(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+
+		connections.add(response);
+		for(String codigo : codigosRequest) {
+			codigos.computeIfAbsent(codigo, key -> new HashSet<>()).add(response);
+		}
+		for(String departamento : departamentosRequest) {
+			departamentos.computeIfAbsent(departamento, key -> new HashSet<>()).add(response);
+		}
+		response.closeHandler(v -> this.unsubscribe(response, codigosRequest, departamentosRequest));
+
+		response.write("retry: 5000\n\n");
+	}
+
+	/**
+	 * Sends a state change to the connections subscribed to its code or its department
+	 * @param message State change
+	 */
+	private void dispatch(Message<JsonObject> message) {
+		JsonObject change = message.body();
+		Set<HttpServerResponse> subscribers = codigos.get(change.getString("codigo"));
+		Set<HttpServerResponse> departamentoSubscribers = change.getString("departamento")!=null
+				? departamentos.get(change.getString("departamento")) : null;
+		if(subscribers==null && departamentoSubscribers==null) {
+			return;
+		}
+
+		//Connections subscribed to the code and the department receive the event once
+		Set<HttpServerResponse> targets = new HashSet<>();
+		if(subscribers!=null) {
+			targets.addAll(subscribers);
+		}
+		if(departamentoSubscribers!=null) {
+			targets.addAll(departamentoSubscribers);
+		}
+
+		Buffer event = Buffer.buffer("event: orden\ndata: ").appendBuffer(change.toBuffer()).appendString("\n\n");
+		for(HttpServerResponse response : targets) {
+			this.send(response, event);
+		}
+	}
+
+	/**
+	 * Writes an event, connections whose buffer is full are closed
+	 * @param response Event stream
+	 * @param event Event to be sent
+	 */
+	private void send(HttpServerResponse response, Buffer event) {
+		if(response.writeQueueFull()) {
+			response.reset();
+		} else {
+			response.write(event);
+		}
+	}
+
+	/**
+	 * Sends a keep alive comment to every connection so proxies do not close them
+	 * @param vertx The entry point into the Vert.x Core API.
+	 */
+	private void scheduleHeartbeat(Vertx vertx) {
+		vertx.setTimer(heartbeat, timer -> {
+			for(HttpServerResponse response : new ArrayList<>(connections)) {
+				this.send(response, HEARTBEAT);
+			}
+			this.scheduleHeartbeat(vertx);
+		});
+	}
+
+	/**
+	 * Removes a closed connection from its subscriptions
+	 * @param response Event stream
+	 * @param codigosRequest Subscribed codes
+	 * @param departamentosRequest Subscribed departments
+	 */
+	private void unsubscribe(HttpServerResponse response, List<String> codigosRequest, List<String> departamentosRequest) {
+		connections.remove(response);
+		for(String codigo : codigosRequest) {
+			this.remove(codigos, codigo, response);
+		}
+		for(String departamento : departamentosRequest) {
+			this.remove(departamentos, departamento, response);
+		}
+	}
+
+	/**
+	 * Removes a connection from the subscriptions of a key
+	 * @param subscriptions Connections by key
+	 * @param key Payment order code or department
+	 * @param response Event stream
+	 */
+	private void remove(Map<String, Set<HttpServerResponse>> subscriptions, String key, HttpServerResponse response) {
+		Set<HttpServerResponse> responses = subscriptions.get(key);
+		if(responses!=null) {
+			responses.remove(response);
+			if(responses.isEmpty()) {
+				subscriptions.remove(key);
+			}
+		}
+	}
+}
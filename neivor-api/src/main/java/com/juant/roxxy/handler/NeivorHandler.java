@@ -0,0 +1,608 @@
+package com.juant.roxxy.handler;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.juant.roxxy.core.Deadline;
+import com.juant.roxxy.core.JsonResponseWriter;
+import com.juant.roxxy.core.KeyedMutex;
+import com.juant.roxxy.core.RequestReader;
+import com.juant.roxxy.core.Rows;
+import com.juant.roxxy.core.Shard;
+import com.juant.roxxy.core.ShardRouter;
+import com.juant.roxxy.entity.Money;
+import com.juant.roxxy.query.NeivorQueries;
+import com.juant.roxxy.query.NeivorRows;
+import com.juant.roxxy.request.OrdenPagoRequest;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Lock;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Handles API routing for Neivor
+ * @author Juan Tzun
+ *
+ */
+public class NeivorHandler {
+	
+	//Routing context key set once the payment order transaction starts, the department lock is then released by it
+	private static final String ORDER_TRANSACTION = "neivor.order.transaction";
+	
+	private final ShardRouter shards;
+	private final JsonResponseWriter responseWriter;
+	private final RequestReader requestReader;
+	private final Deadline deadline;
+	private final NeivorEventHandler eventHandler;
+	
+	//Payment order generation of every department, one request at a time (see generatePaymentOrder)
+	private final KeyedMutex ordenesDepartamento;
+	
+	//Payment order states by code, least recently used first (see getPaymentOrderStateByCode)
+	private final Map<String, OrdenEstado> ordenesEstado;
+	private int ordenesEstadoMaxEntries;
+	private long ordenEstadoMaxAge;
+	
+	//Payment orders by page of GET /payment-orders, by default and at most
+	private int ordenesPagina;
+	private int ordenesPaginaMax;
+	
+	/**
+	 * Constructor with parameters.
+	 * @param shards Shards of Neivor database, by department number and by payment order code
+	 * @param eventHandler Payment order state change subscriptions
+	 * @param ordenesDepartamento Mutex by department number shared by the instances
+	 * @param config Application config
+	 */
+	public NeivorHandler(ShardRouter shards, NeivorEventHandler eventHandler, KeyedMutex ordenesDepartamento, JsonObject config) {
+		this.shards = shards;
+		this.eventHandler = eventHandler;
+		this.ordenesDepartamento = ordenesDepartamento;
+		this.responseWriter = new JsonResponseWriter(config);
+		this.requestReader = new RequestReader(config);
+		this.deadline = new Deadline(config, routingContext -> this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject(), "504", ""));
+		this.ordenesEstado = new LinkedHashMap<String, OrdenEstado>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, OrdenEstado> eldest) {
+				return size()>ordenesEstadoMaxEntries;
+			}
+		};
+		this.ordenesEstadoMaxEntries = config.getInteger("neivor.order.state.cache.entries", 10000);
+		this.ordenEstadoMaxAge = config.getLong("neivor.order.state.max.age", 5L);
+		this.ordenesPaginaMax = Math.max(config.getInteger("neivor.orders.page.max", 100), 1);
+		this.ordenesPagina = Math.min(Math.max(config.getInteger("neivor.orders.page.size", 20), 1), ordenesPaginaMax);
+	}
+
+	/**
+	 * Applies a new config without restart
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		responseWriter.configure(config);
+		requestReader.configure(config);
+		deadline.configure(config);
+		eventHandler.configure(config);
+		ordenesDepartamento.configure(config);
+		ordenesEstadoMaxEntries = config.getInteger("neivor.order.state.cache.entries", 10000);
+		ordenEstadoMaxAge = config.getLong("neivor.order.state.max.age", 5L);
+		ordenesPaginaMax = Math.max(config.getInteger("neivor.orders.page.max", 100), 1);
+		ordenesPagina = Math.min(Math.max(config.getInteger("neivor.orders.page.size", 20), 1), ordenesPaginaMax);
+	}
+	
+	/**
+	 * Creates configuration for database connection and defines all available routes starting by /api/neivor.
+	 * The following APIs are available:
+	 * <ul>
+	 * 	<li>POST /api/neivor/generate-payment-order (see generatePaymentOrder)</li>
+	 * 	<li>GET /api/neivor/payment-order-state/:code (see getPaymentOrderStateByCode)</li>
+	 * 	<li>GET /api/neivor/payment-orders (see getPaymentOrdersByDepartment)</li>
+	 * 	<li>GET /api/neivor/balance/:departamento (see getBalanceByDepartment)</li>
+	 * 	<li>GET /api/neivor/payment-order-events (see subscribePaymentOrderEvents)</li>
+	 * </ul>
+	 * @param vertx The entry point into the Vert.x Core API. 
+	 * @return Router with Neivor routes
+	 */
+	public Router getAPISubRouter(Vertx vertx) {
+		
+		Router apiSubRouter = Router.router(vertx);
+		
+		// API Routing
+		apiSubRouter.route("/*").handler(this::defaultProcessorForNeivorAPI);
+    	apiSubRouter.route("/*").handler(requestReader.getBodyHandler()).failureHandler(this::rejectRequestBody);
+    	apiSubRouter.post("/generate-payment-order").handler(deadline.route("generate-payment-order")).handler(this::generatePaymentOrder);
+    	apiSubRouter.get("/payment-order-state/:code").handler(deadline.route("payment-order-state")).handler(this::getPaymentOrderStateByCode);
+    	apiSubRouter.get("/payment-orders").handler(deadline.route("payment-orders")).handler(this::getPaymentOrdersByDepartment);
+    	apiSubRouter.get("/balance/:departamento").handler(deadline.route("balance")).handler(this::getBalanceByDepartment);
+    	apiSubRouter.get("/payment-order-events").handler(this::subscribePaymentOrderEvents);
+    	
+		return apiSubRouter;
+	}
+	
+	/**
+	 * Called for all default API HTTP GET, POST, PUT and DELETE. Enables cross origin
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	public void defaultProcessorForNeivorAPI(RoutingContext routingContext) {
+		//Allowing CORS - Cross Domain API calls
+		routingContext.response().putHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN,"*");
+		routingContext.response().putHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS,"GET,POST,PUT,DELETE");
+		routingContext.response().putHeader(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, "*");
+		
+		//Call the next matching route
+    	routingContext.next();
+	}
+	
+	/**
+	 * Payment order generation.
+	 * The process to be executed is as follows:
+	 * <ol>
+	 * 	<li>Body validation</li>
+	 * 	<li>Resident payable services validation</li>
+	 * 	<li>Resident payable services sum calculation</li>
+	 * 	<li>Payment order code generation</li>
+	 * 	<li>Payment order creation in Neivor database with details. Details associates services with payment order</li>
+	 * </ol>
+	 * The payment order amount is the sum of the pending services read, the payment order, its details and the change of the
+	 * department balance (see getBalanceByDepartment) are written in one transaction.
+	 * All the queries go to the shard of the department. The code is the next number of the shard (see ShardRouter.interleave),
+	 * so codes of different shards never collide and every code leads to its shard.
+	 * Requests of the same department are processed one at a time, otherwise two of them would read the same pending
+	 * services and create two payment orders for them; requests of different departments run at the same time. At most
+	 * neivor.order.lock.queue requests of a department wait (default 10), the next ones are rejected with 406 (see KeyedMutex).
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	public void generatePaymentOrder(RoutingContext routingContext) {
+		OrdenPagoRequest request = requestReader.read(routingContext, OrdenPagoRequest.class);
+		
+		JsonObject response = new JsonObject().put("orden", "");
+		
+		//Body validation
+		if(request==null || request.getNumeroDepartamento()==null) {
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "502", "");
+		} else {
+			ordenesDepartamento.acquire(request.getNumeroDepartamento(), resLock -> {
+				if(resLock.failed()) {
+					this.getRoutingContextResponseByErrorCode(routingContext, response, "406", "");
+					return;
+				}
+				
+				//The lock is released once the response is sent, also when the deadline passed while waiting, unless the payment
+				//order transaction started: the timeout may end the response during the commit, it is released once it completes
+				Lock lock = resLock.result();
+				if(routingContext.response().ended() || routingContext.response().closed()) {
+					lock.release();
+					return;
+				}
+				routingContext.addEndHandler(end -> {
+					if(routingContext.get(ORDER_TRANSACTION)==null) {
+						lock.release();
+					}
+				});
+				this.createPaymentOrder(routingContext, request, response, lock);
+			});
+		}
+	}
+	
+	/**
+	 * Creates the payment order of the department with its pending services, the department lock is held
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 * @param request Validated request
+	 * @param response Response for the failures
+	 * @param lock Department lock, released when the payment order transaction completes
+	 */
+	private void createPaymentOrder(RoutingContext routingContext, OrdenPagoRequest request, JsonObject response, Lock lock) {
+		//Recovering fields from body request
+		String nombrePagador = request.getNombrePagador();
+		String documentoPagador = request.getDocumentoPagador();
+		String numeroDepartamento = request.getNumeroDepartamento();
+		Shard shard = shards.route(numeroDepartamento);
+		
+		//Resident payable services validation
+		Deadline.query(routingContext, shard.getBreaker(), shard.getClient(), NeivorQueries.SELECT_SERVICIOS_PENDIENTES).collecting(Rows.list(NeivorRows.SERVICIO_PENDIENTE))
+			.execute(Tuple.of(numeroDepartamento), resServicios -> {
+				if(resServicios.succeeded()) {
+					if(resServicios.result()!=null && resServicios.result().size()>0) {
+						
+						//Resident payable services sum calculation
+						long importe = 0L;
+						for(JsonObject servicio : resServicios.result().value()) {
+							importe += servicio.getLong("importeAdeudado");
+						}
+						final long valorPagar = importe;
+						
+						//Payment order code generation
+						Deadline.query(routingContext, shard.getBreaker(), shard.getClient(), NeivorQueries.SELECT_CUENTA_ORDENES_PAGO).collecting(Rows.single(NeivorRows.CUENTA))
+							.execute(resCuenta -> {
+								if(resCuenta.succeeded()) {
+									Integer cuenta = resCuenta.result().value()!=null ? resCuenta.result().value() : 0;
+									String numero = String.valueOf(shards.interleave(cuenta, shard));
+									String codigo = "";
+									for(int i = 0; i<(3-numero.length()); i++) {
+										codigo += "0";
+									}
+									codigo += numero;
+									
+									final String ordenPago = codigo;
+									List<Tuple> detalles = new ArrayList<>();
+									for(JsonObject servicio : resServicios.result().value()) {
+										detalles.add(Tuple.of(ordenPago, servicio.getInteger("id")));
+									}
+									
+									//Payment order creation in Neivor database with details. Details associates services with payment order
+									routingContext.put(ORDER_TRANSACTION, true);
+									Deadline.transaction(routingContext, shard.getBreaker(), shard.getClient(), connection -> connection.preparedQuery(NeivorQueries.INSERT_ORDEN_PAGO)
+											.execute(Tuple.of(ordenPago, nombrePagador, documentoPagador, numeroDepartamento, Money.toDecimal(valorPagar), 0))
+											.compose(res -> connection.preparedQuery(NeivorQueries.INSERT_ORDEN_PAGO_DETALLE).executeBatch(detalles))
+											.compose(res -> connection.preparedQuery(NeivorQueries.UPSERT_SALDO_ORDEN_PAGO_GENERADA)
+													.execute(Tuple.of(numeroDepartamento, Money.toDecimal(valorPagar)))), resOrdenPago -> {
+										if(resOrdenPago.succeeded()) {
+											this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject().put("orden", ordenPago), "000", "");
+										} else {
+											this.getRoutingContextResponseByErrorCode(routingContext, response, "501", "ordenes_pago");
+										}
+									}, resTransaction -> lock.release());
+								} else {
+									this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "NO SE HA PODIDO CREAR EL CODIGO DE LA ORDEN DE PAGO");
+								}
+							});
+					} else {
+						this.getRoutingContextResponseByErrorCode(routingContext, response, "101", "");
+					}
+				} else {
+					this.getRoutingContextResponseByErrorCode(routingContext, response, "501", "servicios");
+				}
+			});
+	}
+	
+	/**
+	 * See payment order state by code if exist. The response has a weak ETag of the state and Cache-Control max-age of
+	 * neivor.order.state.max.age seconds (default 5), If-None-Match with the same ETag is answered with 304 without body.
+	 * Pollers sending Cache-Control max-age get the last state read by this verticle if it is not older than their
+	 * max-age (at most neivor.order.state.max.age), without a query. The last neivor.order.state.cache.entries
+	 * states (default 10000) are kept. The state is read from the shard of the code (see ShardRouter.routeNumber).
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	public void getPaymentOrderStateByCode(RoutingContext routingContext) {
+		//Recovering code parameter from request
+		String codigo = routingContext.request().getParam("code");
+		
+		//Response to be sent in contextRouting.end()
+		JsonObject response = new JsonObject().put("ordenEstado", "");
+		
+		if(codigo==null) {
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "CODIGO DE ORDEN NO PROPORCIONADO");
+			return;
+		}
+		
+		//State read before, if the poller accepts its age
+		OrdenEstado ordenEstado = ordenesEstado.get(codigo);
+		long maxAge = Math.min(this.getRequestMaxAge(routingContext.request().getHeader(HttpHeaders.CACHE_CONTROL)), ordenEstadoMaxAge);
+		if(ordenEstado!=null && System.currentTimeMillis()-ordenEstado.loaded<=maxAge*1000) {
+			this.sendPaymentOrderState(routingContext, ordenEstado.pagado);
+			return;
+		}
+		
+		Shard shard = shards.routeNumber(codigo);
+		if(shard==null) {
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "ORDEN DE PAGO DESCONOCIDA");
+			return;
+		}
+		
+		//Search payment order state by code in Neivor database
+		Deadline.query(routingContext, shard.getBreaker(), shard.getClient(), NeivorQueries.SELECT_ORDEN_PAGO_ESTADO).collecting(Rows.single(NeivorRows.PAGADO))
+			.execute(Tuple.of(codigo), resOrdenPago -> {
+				if(resOrdenPago.succeeded()) {
+					if(resOrdenPago.result()!=null && resOrdenPago.result().size()>0) {
+						Boolean pagado = resOrdenPago.result().value();
+						ordenesEstado.put(codigo, new OrdenEstado(pagado));
+						this.sendPaymentOrderState(routingContext, pagado);
+					} else {
+						ordenesEstado.remove(codigo);
+						this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "ORDEN DE PAGO DESCONOCIDA");
+					}
+				} else {
+					this.getRoutingContextResponseByErrorCode(routingContext, response, "501", "ordenes_pago");
+				}
+			});
+	}
+	
+	/**
+	 * Payment orders of a department, newest first, by pages. The following query parameters are available:
+	 * <ul>
+	 * 	<li><b>departamento</b>: department number (required)</li>
+	 * 	<li><b>pagado</b>: true or false to list only the paid or the unpaid payment orders</li>
+	 * 	<li><b>desde</b> and <b>hasta</b>: first and last creation date, as yyyyMMdd</li>
+	 * 	<li><b>limite</b>: payment orders of the page, neivor.orders.page.size by default (20) and at most
+	 * 	neivor.orders.page.max (100)</li>
+	 * 	<li><b>cursor</b>: cursor of the previous page, with the same filters</li>
+	 * </ul>
+	 * The response is {ordenes: [{codigo, nombrePagador, documentoPagador, valorPagar, pagado, fechaCreacion}], cursor},
+	 * the cursor is null on the last page. Pages are read after the creation date and code of the last payment order of the
+	 * previous page instead of skipping rows, so every page costs the same. The payment orders are read from the shard of
+	 * the department, archived payment orders (see PaymentOrderExpiry) are not listed.
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	public void getPaymentOrdersByDepartment(RoutingContext routingContext) {
+		JsonObject response = new JsonObject().put("ordenes", new JsonArray()).putNull("cursor");
+		
+		String departamento = routingContext.request().getParam("departamento");
+		String pagadoParam = routingContext.request().getParam("pagado");
+		String cursor = routingContext.request().getParam("cursor");
+		Boolean pagado = pagadoParam!=null ? Boolean.valueOf(pagadoParam) : null;
+		LocalDateTime desde;
+		LocalDateTime hasta;
+		int limite;
+		
+		//Creation date and code of the last payment order of the previous page
+		PageCursor posicion = null;
+		try {
+			desde = this.getDateParam(routingContext, "desde", LocalDate.of(1000, 1, 1));
+			hasta = this.getDateParam(routingContext, "hasta", LocalDate.of(9999, 12, 30)).plusDays(1);
+			String limiteParam = routingContext.request().getParam("limite");
+			limite = limiteParam!=null ? Integer.parseInt(limiteParam) : ordenesPagina;
+			if(cursor!=null) {
+				posicion = PageCursor.decode(cursor);
+			}
+		} catch (DateTimeParseException | IllegalArgumentException e) {
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "502", "");
+			return;
+		}
+		
+		if(departamento==null || (pagadoParam!=null && !pagadoParam.equals("true") && !pagadoParam.equals("false"))
+				|| limite<1 || limite>ordenesPaginaMax) {
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "502", "");
+			return;
+		}
+		
+		//One more payment order than the page to know if there is a next page
+		Shard shard = shards.route(departamento);
+		Tuple params = Tuple.of(departamento, desde, hasta, pagado, pagado);
+		if(posicion!=null) {
+			params.addValue(posicion.getFechaCreacion()).addValue(posicion.getFechaCreacion()).addValue(posicion.getCodigo());
+		}
+		params.addValue(limite+1);
+		
+		Deadline.query(routingContext, shard.getBreaker(), shard.getClient(),
+				posicion!=null ? NeivorQueries.SELECT_ORDENES_PAGO_DEPARTAMENTO_DESDE : NeivorQueries.SELECT_ORDENES_PAGO_DEPARTAMENTO)
+			.collecting(Rows.list(NeivorRows.ORDEN_DEPARTAMENTO))
+			.execute(params, resOrdenes -> {
+				if(resOrdenes.succeeded()) {
+					List<JsonObject> ordenes = resOrdenes.result().value();
+					if(ordenes.size()>limite) {
+						ordenes = ordenes.subList(0, limite);
+						JsonObject ultima = ordenes.get(limite-1);
+						response.put("cursor", PageCursor.encode(ultima.getString("fechaCreacion"), ultima.getString("codigo")));
+					}
+					response.put("ordenes", new JsonArray(new ArrayList<>(ordenes)));
+					this.getRoutingContextResponseByErrorCode(routingContext, response, "000", "");
+				} else {
+					this.getRoutingContextResponseByErrorCode(routingContext, response, "501", "ordenes_pago");
+				}
+			});
+	}
+	
+	/**
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 * @param name Query parameter with a date as yyyyMMdd
+	 * @param defaultValue Date when the parameter is missing
+	 * @return Start of the day of the date
+	 */
+	private LocalDateTime getDateParam(RoutingContext routingContext, String name, LocalDate defaultValue) {
+		String value = routingContext.request().getParam(name);
+		LocalDate date = value!=null ? LocalDate.parse(value, DateTimeFormatter.BASIC_ISO_DATE) : defaultValue;
+		return date.atStartOfDay();
+	}
+	
+	/**
+	 * Outstanding balance of a department as {saldo: {sinOrden, porPagar, total}}: the amount of its services without
+	 * payment order, of its unpaid payment orders and both. The balance is kept in neivor_saldos_departamento, changed in
+	 * the transactions that generate, pay, revert and expire payment orders and recomputed by DepartmentBalanceCheck, so
+	 * it is read with one row of the shard of the department. A department without balance owes nothing. Services are not
+	 * created by the API, so new services are counted in sinOrden from the next check; a new payment order takes all the
+	 * services of the department and sets sinOrden to 0.
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	public void getBalanceByDepartment(RoutingContext routingContext) {
+		String departamento = routingContext.request().getParam("departamento");
+		Shard shard = shards.route(departamento);
+		
+		Deadline.query(routingContext, shard.getBreaker(), shard.getClient(), NeivorQueries.SELECT_SALDO_DEPARTAMENTO).collecting(Rows.single(NeivorRows.SALDO))
+			.execute(Tuple.of(departamento), resSaldo -> {
+				if(resSaldo.succeeded()) {
+					JsonObject saldo = resSaldo.result().value()!=null ? resSaldo.result().value()
+							: new JsonObject().put("sinOrden", Money.toDecimal(0L)).put("porPagar", Money.toDecimal(0L)).put("total", Money.toDecimal(0L));
+					this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject().put("saldo", saldo), "000", "");
+				} else {
+					this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject().put("saldo", ""), "501", "saldos_departamento");
+				}
+			});
+	}
+	
+	/**
+	 * Opens a Server-Sent Events stream with the state changes of the payment orders in the codigo query parameters
+	 * and of the payment orders of the departments in the departamento query parameters (see NeivorEventHandler),
+	 * for example /api/neivor/payment-order-events?codigo=001&amp;departamento=5A
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	public void subscribePaymentOrderEvents(RoutingContext routingContext) {
+		List<String> codigos = routingContext.queryParam("codigo");
+		List<String> departamentos = routingContext.queryParam("departamento");
+		
+		if(!eventHandler.isValid(codigos.size()+departamentos.size())) {
+			this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject(), "502", "");
+		} else {
+			eventHandler.subscribe(routingContext, codigos, departamentos);
+		}
+	}
+	
+	/**
+	 * Sends the payment order state, or 304 when the client already has it
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 * @param pagado Payment order state
+	 */
+	private void sendPaymentOrderState(RoutingContext routingContext, Boolean pagado) {
+		String etag = "W/\""+pagado+"\"";
+		routingContext.response()
+			.putHeader(HttpHeaders.ETAG, etag)
+			.putHeader(HttpHeaders.CACHE_CONTROL, "private, max-age="+ordenEstadoMaxAge);
+		
+		if(this.matchesETag(routingContext.request().getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+			routingContext.response().setStatusCode(304).end();
+		} else {
+			this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject().put("ordenEstado", pagado), "000", "");
+		}
+	}
+	
+	/**
+	 * @param ifNoneMatch If-None-Match header, a list of ETags
+	 * @param etag Current ETag
+	 * @return true if the list has the ETag, compared without the weak prefix
+	 */
+	private boolean matchesETag(String ifNoneMatch, String etag) {
+		if(ifNoneMatch==null) {
+			return false;
+		}
+		String opaqueTag = etag.substring(2);
+		for(String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if(tag.equals("*") || tag.equals(etag) || tag.equals(opaqueTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @param cacheControl Cache-Control request header
+	 * @return max-age in seconds, 0 when the header does not have it or it asks for no-cache
+	 */
+	private long getRequestMaxAge(String cacheControl) {
+		if(cacheControl==null || cacheControl.contains("no-cache")) {
+			return 0L;
+		}
+		for(String directive : cacheControl.split(",")) {
+			directive = directive.trim();
+			if(directive.startsWith("max-age=")) {
+				try {
+					return Long.parseLong(directive.substring(8));
+				} catch (NumberFormatException e) {
+					return 0L;
+				}
+			}
+		}
+		return 0L;
+	}
+
+	/**
+	 * Answers requests whose body exceeds http.body.limit with 502, other failures go to the next failure handler
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	private void rejectRequestBody(RoutingContext routingContext) {
+		if(routingContext.statusCode()==413) {
+			this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject(), "502", "");
+		} else {
+			routingContext.next();
+		}
+	}
+	
+	/**
+	 * Creates routing context response according to codError parameter. Puts the following headers:
+	 * <ul>
+	 * 	<li>content-type: application/json</li>
+	 * 	<li>codError: see error codes list below</li>
+	 * 	<li>descripcion: error description</li>
+	 * </ul>
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web. 
+	 * @param object Load to be encoded by Json for routing context
+	 * @param codError Custom error code for neivor. Can take the following values:
+	 * <ul>
+	 * 	<li><b>000</b>: PROCESO CONFORME (status code 200)</li>
+	 * 	<li><b>101</b>: NO HAY SERVICIOS PARA PROCESAR ORDEN DE PAGO (status code 404)</li>
+	 * 	<li><b>201</b>: message (status code 404)</li>
+	 * 	<li><b>406</b>: SOLICITUDES EN ESPERA EXCEDIDAS, too many requests of the department are waiting (status code 429)</li>
+	 * 	<li><b>501</b>: PROBLEMAS CON LA CONEXION + message (status code 404)</li>
+	 * 	<li><b>502</b>: CARGA UTIL NO VALIDA (status code 400)</li>
+	 * 	<li><b>504</b>: TIEMPO DE ESPERA AGOTADO, the deadline of the route passed (status code 504)</li>
+	 * </ul>
+	 * @param message Custom extra message for descripcion header
+	 */
+	public void getRoutingContextResponseByErrorCode(RoutingContext routingContext, Object object, String codError, String message) {
+		switch(codError) {
+			case "000":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(200)
+					.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "PROCESO CONFORME"), object);
+				break;
+			case "101":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(200)
+					.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "NO HAY SERVICIOS PARA PROCESAR ORDEN DE PAGO"), object);
+				break;
+			case "201":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(200)
+					.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", message), object);
+				break;
+			case "406":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(429)
+					.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "SOLICITUDES EN ESPERA EXCEDIDAS"), object);
+				break;
+			case "501":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(200)
+					.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "PROBLEMAS CON LA CONEXION: "+message), object);
+				break;
+			case "502":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(200)
+					.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "CARGA UTIL NO VALIDA"), object);
+				break;
+			case "504":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(504)
+					.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "TIEMPO DE ESPERA AGOTADO"), object);
+				break;
+		}
+	}
+
+	/**
+	 * Payment order state read from the database
+	 */
+	private static class OrdenEstado {
+		private final Boolean pagado;
+		private final long loaded;
+
+		private OrdenEstado(Boolean pagado) {
+			this.pagado = pagado;
+			this.loaded = System.currentTimeMillis();
+		}
+	}
+}
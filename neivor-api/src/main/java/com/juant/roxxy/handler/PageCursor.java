@@ -0,0 +1,60 @@
+package com.juant.roxxy.handler;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of a page of payment orders (see NeivorHandler.getPaymentOrdersByDepartment): the creation date and code of the
+ * last payment order of the previous page. It is sent to clients as base64url text of fechaCreacion|codigo, without padding.
+ * @author Juan Tzun
+ *
+ */
+public final class PageCursor {
+
+	private final LocalDateTime fechaCreacion;
+	private final String codigo;
+
+	/**
+	 * Constructor with parameters.
+	 * @param fechaCreacion Creation date of the last payment order of the page
+	 * @param codigo Code of the last payment order of the page
+	 */
+	public PageCursor(LocalDateTime fechaCreacion, String codigo) {
+		this.fechaCreacion = fechaCreacion;
+		this.codigo = codigo;
+	}
+
+	/**
+	 * @param fechaCreacion Creation date of the last payment order of the page, as ISO text
+	 * @param codigo Code of the last payment order of the page
+	 * @return Cursor text for the next page
+	 */
+	public static String encode(String fechaCreacion, String codigo) {
+		String posicion = fechaCreacion+"|"+codigo;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(posicion.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param cursor Cursor text sent by the client
+	 * @return Position of the cursor
+	 * @throws IllegalArgumentException If the text was not created by encode
+	 * @throws DateTimeParseException If the creation date is not valid
+	 */
+	public static PageCursor decode(String cursor) {
+		String[] posicion = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+		if(posicion.length<2) {
+			throw new IllegalArgumentException("Invalid cursor: "+cursor);
+		}
+		return new PageCursor(LocalDateTime.parse(posicion[0]), posicion[1]);
+	}
+
+	public LocalDateTime getFechaCreacion() {
+		return fechaCreacion;
+	}
+
+	public String getCodigo() {
+		return codigo;
+	}
+}
@@ -0,0 +1,214 @@
+package com.juant.roxxy.query;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SQL statements used with the Neivor database. All of them are prepared on every pooled connection
+ * during the verticle warm up (see ApiVerticle.warmUpPool). The schema changes they need are in
+ * src/main/resources/db/migration (neivor_*.sql), run in file order on every shard.
+ * @author Juan Tzun
+ *
+ */
+public final class NeivorQueries {
+
+	/**
+	 * Department services without payment order with their amount, the payment order amount is their sum
+	 */
+	public static final String SELECT_SERVICIOS_PENDIENTES = "SELECT id, importe_adeudado FROM neivor_servicios WHERE id NOT IN (SELECT servicio FROM neivor_ordenes_pago_detalles) AND departamento = ?";
+
+	/**
+	 * Payment orders count with the archived ones, used to generate the next code
+	 */
+	public static final String SELECT_CUENTA_ORDENES_PAGO = "SELECT (SELECT COUNT(*) FROM neivor_ordenes_pago) + (SELECT COUNT(*) FROM neivor_ordenes_pago_archivo)";
+
+	/**
+	 * Payment order creation
+	 */
+	public static final String INSERT_ORDEN_PAGO = "INSERT INTO neivor_ordenes_pago (codigo, nombre_pagador, documento_pagador, numero_departamento, valor_pagar, pagado) VALUES (?, ?, ?, ?, ?, ?)";
+
+	/**
+	 * Payment order detail creation, associates a service with the payment order
+	 */
+	public static final String INSERT_ORDEN_PAGO_DETALLE = "INSERT INTO neivor_ordenes_pago_detalles (orden_pago, servicio) VALUES (?, ?)";
+
+	/**
+	 * Adds amounts to the balance of a department (see DepartmentBalanceCheck), creating it when the department has none.
+	 * The table is neivor_saldos_departamento (numero_departamento primary key, sin_orden and por_pagar DECIMAL).
+	 */
+	public static final String UPSERT_SALDO_DEPARTAMENTO = "INSERT INTO neivor_saldos_departamento (numero_departamento, sin_orden, por_pagar) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE sin_orden = sin_orden + VALUES(sin_orden), por_pagar = por_pagar + VALUES(por_pagar)";
+
+	/**
+	 * Balance of the department of a new payment order: the payment order takes all the services without payment order, so
+	 * none are left, and its amount is added to the unpaid amount
+	 */
+	public static final String UPSERT_SALDO_ORDEN_PAGO_GENERADA = "INSERT INTO neivor_saldos_departamento (numero_departamento, sin_orden, por_pagar) VALUES (?, 0, ?) ON DUPLICATE KEY UPDATE sin_orden = 0, por_pagar = por_pagar + VALUES(por_pagar)";
+
+	/**
+	 * Balance of a department by number
+	 */
+	public static final String SELECT_SALDO_DEPARTAMENTO = "SELECT sin_orden, por_pagar FROM neivor_saldos_departamento WHERE numero_departamento = ?";
+
+	/**
+	 * Payment order state by code
+	 */
+	public static final String SELECT_ORDEN_PAGO_ESTADO = "SELECT pagado FROM neivor_ordenes_pago WHERE codigo = ?";
+
+	/**
+	 * Payment order reservation for a payment, it waits for the lock of an expiry in progress (see PaymentOrderExpiry)
+	 */
+	public static final String UPDATE_ORDEN_PAGO_RESERVA = "UPDATE neivor_ordenes_pago SET fecha_reserva = NOW() WHERE codigo = ? AND pagado = 0";
+
+	/**
+	 * Payment order amount and state by code
+	 */
+	public static final String SELECT_ORDEN_PAGO = "SELECT codigo, valor_pagar, pagado FROM neivor_ordenes_pago WHERE codigo = ?";
+
+	/**
+	 * Payment order services
+	 */
+	public static final String SELECT_ORDEN_PAGO_SERVICIOS = "SELECT s.id, s.importe_adeudado FROM neivor_ordenes_pago_detalles opd INNER JOIN neivor_servicios s ON s.id = opd.servicio WHERE opd.orden_pago = ?";
+
+	/**
+	 * Fees of all the payment order services, in service and fee number order (see ServiceFeeCache)
+	 */
+	public static final String SELECT_ORDEN_PAGO_CUOTAS = "SELECT c.servicio, c.numero_cuota, c.detalle_cuota, c.fecha_vencimiento, c.importe_cuota, c.importe_comision FROM neivor_ordenes_pago_detalles opd INNER JOIN neivor_servicios_cuotas c ON c.servicio = opd.servicio WHERE opd.orden_pago = ? ORDER BY c.servicio, c.numero_cuota";
+
+	/**
+	 * Payment order state update, only when the state changes
+	 */
+	public static final String UPDATE_ORDEN_PAGO_ESTADO = "UPDATE neivor_ordenes_pago SET pagado = ? WHERE codigo = ? AND pagado <> ?";
+
+	/**
+	 * Unpaid amount of the department of a payment order, less the payment order amount when it is paid and plus it when
+	 * the payment is reverted
+	 */
+	public static final String UPSERT_SALDO_ORDEN_PAGO_ESTADO = "INSERT INTO neivor_saldos_departamento (numero_departamento, sin_orden, por_pagar) SELECT numero_departamento, 0, IF(?, -valor_pagar, valor_pagar) FROM neivor_ordenes_pago WHERE codigo = ? ON DUPLICATE KEY UPDATE por_pagar = por_pagar + VALUES(por_pagar)";
+
+	/**
+	 * Payment order department by code, published with the state changes
+	 */
+	public static final String SELECT_ORDEN_PAGO_DEPARTAMENTO = "SELECT numero_departamento FROM neivor_ordenes_pago WHERE codigo = ?";
+
+	/**
+	 * Reversion creation, once by Roxxy reversion id (unique index on id_reversion_roxxy) so the outbox relay can send it again
+	 */
+	public static final String INSERT_REVERSION = "INSERT INTO neivor_reversiones (fecha_reversion, orden_pago, monto_revertido, id_reversion_roxxy) VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE id_reversion_roxxy = id_reversion_roxxy";
+
+	/**
+	 * Reversion id by Roxxy reversion id
+	 */
+	public static final String SELECT_REVERSION = "SELECT id_reversion FROM neivor_reversiones WHERE id_reversion_roxxy = ?";
+
+	/**
+	 * Oldest unpaid payment orders created more than the given days ago after the creation date and code of the last payment
+	 * order read, with the time of the database, without locks. It reads the index (pagado, fecha_creacion, codigo).
+	 */
+	public static final String SELECT_ORDENES_PAGO_VENCIDAS = "SELECT codigo, fecha_creacion, NOW() FROM neivor_ordenes_pago WHERE pagado = 0 AND fecha_creacion < NOW() - INTERVAL ? DAY AND (fecha_creacion > ? OR (fecha_creacion = ? AND codigo > ?)) ORDER BY fecha_creacion, codigo LIMIT ?";
+
+	/**
+	 * Expired payment order if it is still unpaid and it was not reserved for a payment after the given time, locked until
+	 * it is archived
+	 */
+	public static final String SELECT_ORDEN_PAGO_VENCIDA = "SELECT codigo FROM neivor_ordenes_pago WHERE codigo = ? AND pagado = 0 AND (fecha_reserva IS NULL OR fecha_reserva < ?) FOR UPDATE";
+
+	/**
+	 * Balance of the department of an expired payment order, its amount goes back to the services without payment order
+	 */
+	public static final String UPSERT_SALDO_ORDEN_PAGO_VENCIDA = "INSERT INTO neivor_saldos_departamento (numero_departamento, sin_orden, por_pagar) SELECT numero_departamento, valor_pagar, -valor_pagar FROM neivor_ordenes_pago WHERE codigo = ? ON DUPLICATE KEY UPDATE sin_orden = sin_orden + VALUES(sin_orden), por_pagar = por_pagar + VALUES(por_pagar)";
+
+	/**
+	 * Payment order details archival
+	 */
+	public static final String ARCHIVE_ORDEN_PAGO_DETALLES = "INSERT INTO neivor_ordenes_pago_detalles_archivo (orden_pago, servicio) SELECT orden_pago, servicio FROM neivor_ordenes_pago_detalles WHERE orden_pago = ?";
+
+	/**
+	 * Payment order details deletion, their services can be paid with a new payment order
+	 */
+	public static final String DELETE_ORDEN_PAGO_DETALLES = "DELETE FROM neivor_ordenes_pago_detalles WHERE orden_pago = ?";
+
+	/**
+	 * Payment order archival
+	 */
+	public static final String ARCHIVE_ORDEN_PAGO = "INSERT INTO neivor_ordenes_pago_archivo (codigo, nombre_pagador, documento_pagador, numero_departamento, valor_pagar, pagado, fecha_creacion) SELECT codigo, nombre_pagador, documento_pagador, numero_departamento, valor_pagar, pagado, fecha_creacion FROM neivor_ordenes_pago WHERE codigo = ?";
+
+	/**
+	 * Payment order deletion
+	 */
+	public static final String DELETE_ORDEN_PAGO = "DELETE FROM neivor_ordenes_pago WHERE codigo = ?";
+
+	/**
+	 * Paid payment orders from a code, in code order
+	 */
+	public static final String SELECT_ORDENES_PAGO_PAGADAS = "SELECT codigo, valor_pagar FROM neivor_ordenes_pago WHERE pagado = 1 AND codigo >= ? ORDER BY codigo LIMIT ?";
+
+	/**
+	 * Reversions from an id, in id order
+	 */
+	public static final String SELECT_REVERSIONES = "SELECT id_reversion, fecha_reversion, orden_pago, monto_revertido FROM neivor_reversiones WHERE id_reversion >= ? ORDER BY id_reversion LIMIT ?";
+
+	/**
+	 * First page of the payment orders of a department created between two dates, optionally with a state, newest first.
+	 * It reads the index (numero_departamento, fecha_creacion, codigo) in reverse order.
+	 */
+	public static final String SELECT_ORDENES_PAGO_DEPARTAMENTO = "SELECT codigo, nombre_pagador, documento_pagador, valor_pagar, pagado, fecha_creacion FROM neivor_ordenes_pago WHERE numero_departamento = ? AND fecha_creacion >= ? AND fecha_creacion < ? AND (? IS NULL OR pagado = ?) ORDER BY fecha_creacion DESC, codigo DESC LIMIT ?";
+
+	/**
+	 * Next page of SELECT_ORDENES_PAGO_DEPARTAMENTO, after the creation date and code of the last payment order read
+	 */
+	public static final String SELECT_ORDENES_PAGO_DEPARTAMENTO_DESDE = "SELECT codigo, nombre_pagador, documento_pagador, valor_pagar, pagado, fecha_creacion FROM neivor_ordenes_pago WHERE numero_departamento = ? AND fecha_creacion >= ? AND fecha_creacion < ? AND (? IS NULL OR pagado = ?) AND (fecha_creacion < ? OR (fecha_creacion = ? AND codigo < ?)) ORDER BY fecha_creacion DESC, codigo DESC LIMIT ?";
+
+	/**
+	 * Balances of all the departments, read by DepartmentBalanceCheck
+	 */
+	public static final String SELECT_SALDOS_DEPARTAMENTO = "SELECT numero_departamento, sin_orden, por_pagar FROM neivor_saldos_departamento";
+
+	/**
+	 * Amount of the services without payment order by department, recomputed by DepartmentBalanceCheck
+	 */
+	public static final String SELECT_IMPORTES_SIN_ORDEN = "SELECT departamento, SUM(importe_adeudado) FROM neivor_servicios WHERE id NOT IN (SELECT servicio FROM neivor_ordenes_pago_detalles) GROUP BY departamento";
+
+	/**
+	 * Amount of the unpaid payment orders by department, recomputed by DepartmentBalanceCheck
+	 */
+	public static final String SELECT_IMPORTES_POR_PAGAR = "SELECT numero_departamento, SUM(valor_pagar) FROM neivor_ordenes_pago WHERE pagado = 0 GROUP BY numero_departamento";
+
+	/**
+	 * All the statements, in the order they are used
+	 */
+	public static final List<String> ALL = Arrays.asList(
+			SELECT_SERVICIOS_PENDIENTES,
+			SELECT_CUENTA_ORDENES_PAGO,
+			INSERT_ORDEN_PAGO,
+			INSERT_ORDEN_PAGO_DETALLE,
+			UPSERT_SALDO_ORDEN_PAGO_GENERADA,
+			UPSERT_SALDO_DEPARTAMENTO,
+			SELECT_SALDO_DEPARTAMENTO,
+			SELECT_ORDEN_PAGO_ESTADO,
+			SELECT_ORDENES_PAGO_DEPARTAMENTO,
+			SELECT_ORDENES_PAGO_DEPARTAMENTO_DESDE,
+			UPDATE_ORDEN_PAGO_RESERVA,
+			SELECT_ORDEN_PAGO,
+			SELECT_ORDEN_PAGO_SERVICIOS,
+			SELECT_ORDEN_PAGO_CUOTAS,
+			UPDATE_ORDEN_PAGO_ESTADO,
+			UPSERT_SALDO_ORDEN_PAGO_ESTADO,
+			SELECT_ORDEN_PAGO_DEPARTAMENTO,
+			INSERT_REVERSION,
+			SELECT_REVERSION,
+			SELECT_ORDENES_PAGO_VENCIDAS,
+			SELECT_ORDEN_PAGO_VENCIDA,
+			UPSERT_SALDO_ORDEN_PAGO_VENCIDA,
+			ARCHIVE_ORDEN_PAGO_DETALLES,
+			DELETE_ORDEN_PAGO_DETALLES,
+			ARCHIVE_ORDEN_PAGO,
+			DELETE_ORDEN_PAGO,
+			SELECT_ORDENES_PAGO_PAGADAS,
+			SELECT_REVERSIONES,
+			SELECT_SALDOS_DEPARTAMENTO,
+			SELECT_IMPORTES_SIN_ORDEN,
+			SELECT_IMPORTES_POR_PAGAR);
+
+	private NeivorQueries() {
+	}
+}
@@ -0,0 +1,105 @@
+package com.juant.roxxy.query;
+
+import java.util.function.Function;
+
+import com.juant.roxxy.entity.Money;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+
+/**
+ * Row mappers of the NeivorQueries statements, used with Rows collectors. Amounts are mapped to long cents (see Money).
+ * @author Juan Tzun
+ *
+ */
+public final class NeivorRows {
+
+	/**
+	 * Payment order code of SELECT_ORDENES_PAGO_VENCIDAS
+	 */
+	public static final Function<Row, String> CODIGO = row -> row.getString(0);
+
+	/**
+	 * Service of SELECT_SERVICIOS_PENDIENTES as {id, importeAdeudado}
+	 */
+	public static final Function<Row, JsonObject> SERVICIO_PENDIENTE = row -> new JsonObject()
+			.put("id", row.getInteger(0))
+			.put("importeAdeudado", Money.fromDecimal(row.getBigDecimal(1)));
+
+	/**
+	 * Payment orders count of SELECT_CUENTA_ORDENES_PAGO
+	 */
+	public static final Function<Row, Integer> CUENTA = row -> row.getInteger(0);
+
+	/**
+	 * Payment order state of SELECT_ORDEN_PAGO_ESTADO
+	 */
+	public static final Function<Row, Boolean> PAGADO = row -> row.getBoolean(0);
+
+	/**
+	 * Payment order of SELECT_ORDEN_PAGO as {codigo, valorPagar, pagado}
+	 */
+	public static final Function<Row, JsonObject> ORDEN_PAGO = row -> new JsonObject()
+			.put("codigo", row.getString(0))
+			.put("valorPagar", Money.fromDecimal(row.getBigDecimal(1)))
+			.put("pagado", row.getBoolean(2));
+
+	/**
+	 * Payment order service of SELECT_ORDEN_PAGO_SERVICIOS as {id, importeAdeudado, cuotas}, without fees
+	 */
+	public static final Function<Row, JsonObject> SERVICIO = row -> new JsonObject()
+			.put("id", row.getInteger(0))
+			.put("importeAdeudado", Money.fromDecimal(row.getBigDecimal(1)))
+			.put("cuotas", new JsonArray());
+
+	/**
+	 * Payment order of SELECT_ORDENES_PAGO_DEPARTAMENTO as {codigo, nombrePagador, documentoPagador, valorPagar, pagado,
+	 * fechaCreacion}, with the amount as a decimal number for the HTTP response and the date in ISO-8601
+	 */
+	public static final Function<Row, JsonObject> ORDEN_DEPARTAMENTO = row -> new JsonObject()
+			.put("codigo", row.getString(0))
+			.put("nombrePagador", row.getString(1))
+			.put("documentoPagador", row.getString(2))
+			.put("valorPagar", row.getBigDecimal(3))
+			.put("pagado", row.getBoolean(4))
+			.put("fechaCreacion", row.getLocalDateTime(5).toString());
+
+	/**
+	 * Department balance of SELECT_SALDO_DEPARTAMENTO as {sinOrden, porPagar, total}, with the amounts as decimal numbers
+	 * for the HTTP response
+	 */
+	public static final Function<Row, JsonObject> SALDO = row -> new JsonObject()
+			.put("sinOrden", row.getBigDecimal(0))
+			.put("porPagar", row.getBigDecimal(1))
+			.put("total", row.getBigDecimal(0).add(row.getBigDecimal(1)));
+
+	/**
+	 * Payment order department of SELECT_ORDEN_PAGO_DEPARTAMENTO
+	 */
+	public static final Function<Row, String> DEPARTAMENTO = row -> row.getString(0);
+
+	/**
+	 * Reversion id of SELECT_REVERSION
+	 */
+	public static final Function<Row, Long> ID_REVERSION = row -> row.getLong(0);
+
+	/**
+	 * Paid payment order of SELECT_ORDENES_PAGO_PAGADAS as {codigo, valorPagar}
+	 */
+	public static final Function<Row, JsonObject> ORDEN_PAGADA = row -> new JsonObject()
+			.put("codigo", row.getString(0))
+			.put("valorPagar", Money.fromDecimal(row.getBigDecimal(1)));
+
+	/**
+	 * Reversion of SELECT_REVERSIONES as {idReversion, fechaReversion, ordenPago, montoRevertido}
+	 */
+	public static final Function<Row, JsonObject> REVERSION = row -> new JsonObject()
+			.put("idReversion", row.getLong(0))
+			.put("fechaReversion", String.valueOf(row.getValue(1)))
+			.put("ordenPago", row.getString(2))
+			.put("montoRevertido", Money.fromDecimal(row.getBigDecimal(3)));
+
+	private NeivorRows() {
+	}
+}
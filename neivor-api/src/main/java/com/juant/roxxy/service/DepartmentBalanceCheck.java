@@ -0,0 +1,195 @@
+package com.juant.roxxy.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+import com.juant.roxxy.core.Shard;
+import com.juant.roxxy.entity.Money;
+import com.juant.roxxy.query.NeivorQueries;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Lock;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Recomputes the department balances of neivor_saldos_departamento. Every balance has the amount of the services without
+ * payment order (sin_orden) and of the unpaid payment orders (por_pagar) of a department, both are changed by adding
+ * amounts in the transactions that pay, revert and expire payment orders; generating a payment order takes all the
+ * services of the department, so it sets sin_orden to 0. Services are not created by the API, so a new service is
+ * counted in the balance from the next check. The check reads the balances and recomputes both
+ * amounts of all the departments of the shard in one transaction, whose reads see the same snapshot (REPEATABLE READ,
+ * the MySQL default), then adds the difference to the wrong balances. Adding the difference instead of writing the
+ * recomputed amounts keeps the changes committed after the snapshot and does not lock the balances while reading, so
+ * payment orders are generated during the check. The first check also fills the table. Every shard has its own job,
+ * it runs once every interval across the instances of the verticle. The following keys are available:
+ * <ul>
+ * 	<li><b>neivor.balance.check.enabled</b>: runs the job (default true)</li>
+ * 	<li><b>neivor.balance.check.interval</b>: milliseconds between checks (default 3600000)</li>
+ * </ul>
+ * @author Juan Tzun
+ *
+ */
+public class DepartmentBalanceCheck {
+
+	private static final String LOCK = "neivor.balance.check";
+	private static final String CHECKS = "neivor.balance.check";
+
+	private final Shard shard;
+	private Vertx vertx;
+
+	private boolean enabled;
+	private long interval;
+
+	/**
+	 * Constructor with parameters.
+	 * @param shard Shard of Neivor database
+	 * @param config Application config
+	 */
+	public DepartmentBalanceCheck(Shard shard, JsonObject config) {
+		this.shard = shard;
+		this.configure(config);
+	}
+
+	/**
+	 * Reads the neivor.balance.check.* settings, used from the next check
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		this.enabled = config.getBoolean("neivor.balance.check.enabled", true);
+		this.interval = Math.max(config.getLong("neivor.balance.check.interval", 3600000L), 1L);
+	}
+
+	/**
+	 * Checks the balances if no other instance checked them within the interval, then schedules the next checks
+	 * @param vertx The entry point into the Vert.x Core API.
+	 */
+	public void register(Vertx vertx) {
+		this.vertx = vertx;
+		this.check();
+	}
+
+	/**
+	 * @param delay Milliseconds until the next check
+	 */
+	private void schedule(long delay) {
+		vertx.setTimer(delay, timer -> this.check());
+	}
+
+	/**
+	 * Checks the balances if the job is enabled, no other instance is checking them and the last check is older than the
+	 * interval, then schedules the next check
+	 */
+	private void check() {
+		if(!enabled) {
+			this.schedule(interval);
+			return;
+		}
+		vertx.sharedData().getLocalLockWithTimeout(LOCK+"."+shard.getName(), 10L, resLock -> {
+			if(resLock.failed()) {
+				this.schedule(interval);
+				return;
+			}
+			Lock lock = resLock.result();
+
+			//Checked by another instance since the last check of this one
+			Long last = this.getChecks().get(shard.getName());
+			long age = last!=null ? System.currentTimeMillis()-last : interval;
+			if(age<interval) {
+				lock.release();
+				this.schedule(interval-age);
+				return;
+			}
+			long start = System.currentTimeMillis();
+			shard.execute(client -> client.withTransaction(this::recompute), resCheck -> {
+				if(resCheck.succeeded()) {
+					this.getChecks().put(shard.getName(), start);
+					if(resCheck.result()>0) {
+						System.out.println("Corrected "+resCheck.result()+" department balances in "+shard.getName()+" in "+(System.currentTimeMillis()-start)+" ms");
+					}
+				} else {
+					System.out.println("Department balance check failed in "+shard.getName()+": "+resCheck.cause().getMessage());
+				}
+				lock.release();
+				this.schedule(interval);
+			});
+		});
+	}
+
+	/**
+	 * Reads the balances and the recomputed amounts, then adds the differences
+	 * @param connection Connection of the transaction
+	 * @return Number of balances corrected
+	 */
+	private Future<Integer> recompute(SqlConnection connection) {
+		return connection.preparedQuery(NeivorQueries.SELECT_SALDOS_DEPARTAMENTO).collecting(collector(2)).execute()
+				.compose(resSaldos -> connection.preparedQuery(NeivorQueries.SELECT_IMPORTES_SIN_ORDEN).collecting(collector(1)).execute()
+				.compose(resSinOrden -> connection.preparedQuery(NeivorQueries.SELECT_IMPORTES_POR_PAGAR).collecting(collector(1)).execute()
+				.compose(resPorPagar -> {
+					Map<String, long[]> saldos = resSaldos.value();
+					Map<String, long[]> sinOrden = resSinOrden.value();
+					Map<String, long[]> porPagar = resPorPagar.value();
+
+					Set<String> departamentos = new HashSet<>(saldos.keySet());
+					departamentos.addAll(sinOrden.keySet());
+					departamentos.addAll(porPagar.keySet());
+
+					List<Tuple> correcciones = new ArrayList<>();
+					for(String departamento : departamentos) {
+						long[] saldo = saldos.getOrDefault(departamento, new long[2]);
+						long diferenciaSinOrden = amount(sinOrden, departamento)-saldo[0];
+						long diferenciaPorPagar = amount(porPagar, departamento)-saldo[1];
+						if(diferenciaSinOrden!=0 || diferenciaPorPagar!=0 || !saldos.containsKey(departamento)) {
+							correcciones.add(Tuple.of(departamento, Money.toDecimal(diferenciaSinOrden), Money.toDecimal(diferenciaPorPagar)));
+						}
+					}
+					if(correcciones.isEmpty()) {
+						return Future.succeededFuture(0);
+					}
+					return connection.preparedQuery(NeivorQueries.UPSERT_SALDO_DEPARTAMENTO).executeBatch(correcciones).map(correcciones.size());
+				})));
+	}
+
+	/**
+	 * @param amounts Amounts by department
+	 * @param departamento Department number
+	 * @return Amount of the department, 0 without it
+	 */
+	private static long amount(Map<String, long[]> amounts, String departamento) {
+		long[] amount = amounts.get(departamento);
+		return amount!=null ? amount[0] : 0L;
+	}
+
+	/**
+	 * @param columns Amount columns after the department number
+	 * @return Collector of the rows into their amounts in cents by department number
+	 */
+	private static Collector<Row, ?, Map<String, long[]>> collector(int columns) {
+		return Collectors.toMap(row -> row.getString(0), row -> {
+			long[] amounts = new long[columns];
+			for(int i = 0; i<columns; i++) {
+				BigDecimal amount = row.getBigDecimal(i+1);
+				amounts[i] = amount!=null ? Money.fromDecimal(amount) : 0L;
+			}
+			return amounts;
+		}, (first, second) -> second, HashMap::new);
+	}
+
+	/**
+	 * @return Start of the last check by shard name, shared by all the instances
+	 */
+	private LocalMap<String, Long> getChecks() {
+		return vertx.sharedData().getLocalMap(CHECKS);
+	}
+}
@@ -0,0 +1,427 @@
+package com.juant.roxxy.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.juant.roxxy.core.Deadline;
+import com.juant.roxxy.core.NeivorAddress;
+import com.juant.roxxy.core.Rows;
+import com.juant.roxxy.core.Shard;
+import com.juant.roxxy.core.ShardRouter;
+import com.juant.roxxy.entity.Money;
+import com.juant.roxxy.query.NeivorQueries;
+import com.juant.roxxy.query.NeivorRows;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.SqlResult;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Serves Neivor payment orders over the event bus (see NeivorAddress) so Roxxy can work with them
+ * without a connection to the Neivor database. Amounts are sent as long cents (see Money).
+ * Requests by payment order code go to the shard of the code (see ShardRouter.routeNumber), an unknown shard is an unknown
+ * payment order. The reconciliation pages are read from every shard and merged in key order, so the reversion ids of the
+ * shards must not collide (auto_increment_increment and auto_increment_offset of every shard).
+ * @author Juan Tzun
+ *
+ */
+public class NeivorService {
+
+	private final ShardRouter shards;
+	private final ServiceFeeCache serviceFees;
+	private EventBus eventBus;
+
+	/**
+	 * Constructor with parameters.
+	 * @param shards Shards of Neivor database
+	 * @param config Application config
+	 */
+	public NeivorService(ShardRouter shards, JsonObject config) {
+		this.shards = shards;
+		this.serviceFees = new ServiceFeeCache(config);
+	}
+
+	/**
+	 * Applies a new config without restart
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		serviceFees.configure(config);
+	}
+
+	/**
+	 * Registers the consumers for all Neivor addresses
+	 * @param vertx The entry point into the Vert.x Core API.
+	 */
+	public void register(Vertx vertx) {
+		eventBus = vertx.eventBus();
+		eventBus.<JsonObject>consumer(NeivorAddress.ORDEN_PAGO_CONSULTAR, this::getPaymentOrder);
+		eventBus.<JsonObject>consumer(NeivorAddress.ORDEN_PAGO_RESERVAR, this::reservePaymentOrder);
+		eventBus.<JsonObject>consumer(NeivorAddress.ORDEN_PAGO_SERVICIOS, this::getPaymentOrderServices);
+		eventBus.<JsonObject>consumer(NeivorAddress.ORDEN_PAGO_ESTADO, this::updatePaymentOrderState);
+		eventBus.<JsonObject>consumer(NeivorAddress.ORDENES_PAGO_PAGADAS, this::getPaidPaymentOrders);
+		eventBus.<JsonObject>consumer(NeivorAddress.REVERSIONES, this::getReversions);
+	}
+
+	/**
+	 * Payment order code, amount and state searching in Neivor database
+	 * @param message Request with codigo
+	 */
+	public void getPaymentOrder(Message<JsonObject> message) {
+		String codigo = message.body().getString("codigo");
+		Shard shard = shards.routeNumber(codigo);
+		if(shard==null) {
+			message.fail(201, "ORDEN DE PAGO DESCONOCIDA");
+			return;
+		}
+
+		Deadline.query(message, shard.getBreaker(), shard.getClient(), NeivorQueries.SELECT_ORDEN_PAGO).collecting(Rows.single(NeivorRows.ORDEN_PAGO))
+			.execute(Tuple.of(codigo), resOrdenPago -> {
+				if(resOrdenPago.succeeded()) {
+					if(resOrdenPago.result()!=null && resOrdenPago.result().size()>0) {
+						message.reply(resOrdenPago.result().value());
+					} else {
+						message.fail(201, "ORDEN DE PAGO DESCONOCIDA");
+					}
+				} else {
+					message.fail(501, "ordenes_pago");
+				}
+			});
+	}
+
+	/**
+	 * Payment order reservation for a payment, then its code, amount and state. The reservation is committed before the
+	 * reply, so an expiry that starts later does not archive the payment order; an expiry in progress archives it first
+	 * and the payment order is unknown (see PaymentOrderExpiry).
+	 * @param message Request with codigo
+	 */
+	public void reservePaymentOrder(Message<JsonObject> message) {
+		String codigo = message.body().getString("codigo");
+		Shard shard = shards.routeNumber(codigo);
+		if(shard==null) {
+			message.fail(201, "ORDEN DE PAGO DESCONOCIDA");
+			return;
+		}
+
+		Deadline.query(message, shard.getBreaker(), shard.getClient(), NeivorQueries.UPDATE_ORDEN_PAGO_RESERVA)
+			.execute(Tuple.of(codigo), resReserva -> {
+				if(resReserva.succeeded()) {
+					this.getPaymentOrder(message);
+				} else {
+					message.fail(501, "ordenes_pago");
+				}
+			});
+	}
+
+	/**
+	 * Searching payment order details and the fees of every service. Fees come from the fee schedule cache (see
+	 * ServiceFeeCache), if any service is not cached the fees of all the services are read with one query.
+	 * @param message Request with codigo
+	 */
+	public void getPaymentOrderServices(Message<JsonObject> message) {
+		String codigo = message.body().getString("codigo");
+		Shard shard = shards.routeNumber(codigo);
+		if(shard==null) {
+			message.reply(new JsonObject().put("servicios", new JsonArray()));
+			return;
+		}
+
+		Deadline.query(message, shard.getBreaker(), shard.getClient(), NeivorQueries.SELECT_ORDEN_PAGO_SERVICIOS).collecting(Rows.jsonArray(NeivorRows.SERVICIO))
+			.execute(Tuple.of(codigo), resServicios -> {
+				if(resServicios.succeeded()) {
+					JsonArray servicios = resServicios.result().value();
+					if(this.addCachedFees(shard, servicios)) {
+						message.reply(new JsonObject().put("servicios", servicios));
+					} else {
+						this.loadServiceFees(message, shard, codigo, servicios);
+					}
+				} else {
+					message.fail(501, "servicios");
+				}
+			});
+	}
+
+	/**
+	 * Puts the cached fees in every service
+	 * @param shard Shard of the payment order
+	 * @param servicios Payment order services
+	 * @return true if all the services had their fees cached
+	 */
+	private boolean addCachedFees(Shard shard, JsonArray servicios) {
+		for(int i = 0; i<servicios.size(); i++) {
+			JsonObject servicio = servicios.getJsonObject(i);
+			JsonArray cuotas = serviceFees.get(shard.getIndex(), servicio.getInteger("id"));
+			if(cuotas==null) {
+				return false;
+			}
+			servicio.put("cuotas", cuotas);
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the fees of all the payment order services, caches them and replies
+	 * @param message Request to reply
+	 * @param shard Shard of the payment order
+	 * @param codigo Payment order code
+	 * @param servicios Payment order services
+	 */
+	private void loadServiceFees(Message<JsonObject> message, Shard shard, String codigo, JsonArray servicios) {
+		Deadline.query(message, shard.getBreaker(), shard.getClient(), NeivorQueries.SELECT_ORDEN_PAGO_CUOTAS).collecting(ServiceFeeCache.collector())
+			.execute(Tuple.of(codigo), resCuotas -> {
+				if(resCuotas.succeeded()) {
+					List<Integer> ids = new ArrayList<>(servicios.size());
+					for(int i = 0; i<servicios.size(); i++) {
+						ids.add(servicios.getJsonObject(i).getInteger("id"));
+					}
+					serviceFees.putAll(shard.getIndex(), ids, resCuotas.result().value());
+					this.addCachedFees(shard, servicios);
+					message.reply(new JsonObject().put("servicios", servicios));
+				} else {
+					message.fail(501, "servicios_cuotas");
+				}
+			});
+	}
+
+	/**
+	 * Update payment orders state in Neivor database with a batch for every shard, sent at the same time. Codes without
+	 * shard are skipped, they are unknown payment orders. The unpaid amount of the department of every payment order whose
+	 * state changed is updated in the same transaction (see NeivorQueries.UPSERT_SALDO_ORDEN_PAGO_ESTADO), so a repeated
+	 * update does not change it twice. Updates with a reversion create it in the same transaction, once by Roxxy reversion
+	 * id, and the reply has the Neivor reversion ids. Codes of payment orders that do not exist, for example archived by
+	 * PaymentOrderExpiry, are replied in desconocidas and their reversions are not created. Once replied, every change is
+	 * published on ORDEN_PAGO_CAMBIO with the payment order department.
+	 * @param message Request with ordenes, every one with codigo, pagado and optionally reversion
+	 */
+	public void updatePaymentOrderState(Message<JsonObject> message) {
+		JsonArray ordenes = message.body().getJsonArray("ordenes");
+		if(ordenes==null || ordenes.isEmpty()) {
+			message.reply(new JsonObject().put("reversiones", new JsonArray()).put("desconocidas", new JsonArray()));
+			return;
+		}
+		Map<Shard, List<Tuple>> estados = new LinkedHashMap<>();
+		Map<Shard, List<Tuple>> reversiones = new LinkedHashMap<>();
+		Set<String> desconocidas = new LinkedHashSet<>();
+		for(int i = 0; i<ordenes.size(); i++) {
+			JsonObject orden = ordenes.getJsonObject(i);
+			Shard shard = shards.routeNumber(orden.getString("codigo"));
+			if(shard==null) {
+				desconocidas.add(orden.getString("codigo"));
+			} else {
+				estados.computeIfAbsent(shard, key -> new ArrayList<>())
+					.add(Tuple.of(orden.getBoolean("pagado"), orden.getString("codigo"), orden.getBoolean("pagado")));
+				JsonObject reversion = orden.getJsonObject("reversion");
+				if(reversion!=null) {
+					reversiones.computeIfAbsent(shard, key -> new ArrayList<>())
+						.add(Tuple.of(reversion.getString("fechaReversion"), orden.getString("codigo"),
+								Money.toDecimal(reversion.getLong("montoRevertido")), reversion.getLong("idReversion")));
+				}
+			}
+		}
+
+		List<Future> updates = new ArrayList<>();
+		for(Map.Entry<Shard, List<Tuple>> shardEstados : estados.entrySet()) {
+			List<Tuple> shardReversiones = reversiones.getOrDefault(shardEstados.getKey(), new ArrayList<>());
+			Promise<List<JsonObject>> update = Promise.promise();
+			shardEstados.getKey().execute(client -> client.withTransaction(connection -> this.updateStates(connection, shardEstados.getValue())
+					.compose(shardDesconocidas -> {
+						desconocidas.addAll(shardDesconocidas);
+						List<Tuple> conocidas = new ArrayList<>();
+						for(Tuple reversion : shardReversiones) {
+							if(!shardDesconocidas.contains(reversion.getString(1))) {
+								conocidas.add(reversion);
+							}
+						}
+						return this.createReversions(connection, conocidas);
+					})), update);
+			updates.add(update.future());
+		}
+		CompositeFuture.all(updates).onComplete(resUpdatePago -> {
+			if(resUpdatePago.succeeded()) {
+				JsonArray reversionesNeivor = new JsonArray();
+				for(int i = 0; i<updates.size(); i++) {
+					List<JsonObject> shardReversiones = resUpdatePago.result().resultAt(i);
+					shardReversiones.forEach(reversionesNeivor::add);
+				}
+				message.reply(new JsonObject()
+						.put("reversiones", reversionesNeivor)
+						.put("desconocidas", new JsonArray(new ArrayList<>(desconocidas))));
+				for(int i = 0; i<ordenes.size(); i++) {
+					JsonObject orden = ordenes.getJsonObject(i);
+					Shard shard = shards.routeNumber(orden.getString("codigo"));
+					if(shard!=null && !desconocidas.contains(orden.getString("codigo"))) {
+						this.publishPaymentOrderChange(shard, orden.getString("codigo"), orden.getBoolean("pagado"));
+					}
+				}
+			} else {
+				message.fail(501, "ordenes_pago");
+			}
+		});
+	}
+
+	/**
+	 * Updates the states of a shard, then the balances of the payment orders whose state changed. Payment orders not
+	 * updated are searched to tell the ones already in the state from the unknown ones.
+	 * @param connection Connection of the transaction
+	 * @param estados Updates as (pagado, codigo, pagado)
+	 * @return Codes of the unknown payment orders
+	 */
+	private Future<Set<String>> updateStates(SqlConnection connection, List<Tuple> estados) {
+		return connection.preparedQuery(NeivorQueries.UPDATE_ORDEN_PAGO_ESTADO).executeBatch(estados)
+				.compose(resEstados -> {
+					//The batch has a result for every update, in order
+					List<Tuple> saldos = new ArrayList<>();
+					List<Tuple> sinCambio = new ArrayList<>();
+					RowSet<Row> resEstado = resEstados;
+					for(int i = 0; i<estados.size() && resEstado!=null; i++, resEstado = resEstado.next()) {
+						if(resEstado.rowCount()>0) {
+							saldos.add(Tuple.of(estados.get(i).getBoolean(0), estados.get(i).getString(1)));
+						} else {
+							sinCambio.add(Tuple.of(estados.get(i).getString(1)));
+						}
+					}
+					Future<?> resSaldos = saldos.isEmpty()
+							? Future.succeededFuture()
+							: connection.preparedQuery(NeivorQueries.UPSERT_SALDO_ORDEN_PAGO_ESTADO).executeBatch(saldos);
+					return resSaldos.compose(res -> this.findUnknown(connection, sinCambio));
+				});
+	}
+
+	/**
+	 * @param connection Connection of the transaction
+	 * @param codigos Payment order codes as (codigo)
+	 * @return Codes without payment order
+	 */
+	private Future<Set<String>> findUnknown(SqlConnection connection, List<Tuple> codigos) {
+		if(codigos.isEmpty()) {
+			return Future.succeededFuture(new LinkedHashSet<>());
+		}
+		return connection.preparedQuery(NeivorQueries.SELECT_ORDEN_PAGO_ESTADO).executeBatch(codigos)
+				.map(resOrdenes -> {
+					//The batch has a result for every code, in order
+					Set<String> desconocidas = new LinkedHashSet<>();
+					RowSet<Row> resOrden = resOrdenes;
+					for(int i = 0; i<codigos.size() && resOrden!=null; i++, resOrden = resOrden.next()) {
+						if(resOrden.size()==0) {
+							desconocidas.add(codigos.get(i).getString(0));
+						}
+					}
+					return desconocidas;
+				});
+	}
+
+	/**
+	 * Creates the reversions of a shard that do not exist yet and reads their ids
+	 * @param connection Connection of the transaction
+	 * @param reversiones Reversions as (fechaReversion, ordenPago, montoRevertido, idReversionRoxxy)
+	 * @return Reversions as {idReversion, idReversionNeivor}, idReversion is the Roxxy reversion id
+	 */
+	private Future<List<JsonObject>> createReversions(SqlConnection connection, List<Tuple> reversiones) {
+		if(reversiones.isEmpty()) {
+			return Future.succeededFuture(new ArrayList<>());
+		}
+		List<Tuple> ids = new ArrayList<>();
+		for(Tuple reversion : reversiones) {
+			ids.add(Tuple.of(reversion.getLong(3)));
+		}
+		return connection.preparedQuery(NeivorQueries.INSERT_REVERSION).executeBatch(reversiones)
+				.compose(res -> connection.preparedQuery(NeivorQueries.SELECT_REVERSION).executeBatch(ids))
+				.map(resReversiones -> {
+					//The batch has a result for every reversion, in order
+					List<JsonObject> reversionesNeivor = new ArrayList<>();
+					RowSet<Row> resReversion = resReversiones;
+					for(int i = 0; i<ids.size() && resReversion!=null; i++, resReversion = resReversion.next()) {
+						for(Row row : resReversion) {
+							reversionesNeivor.add(new JsonObject()
+									.put("idReversion", ids.get(i).getLong(0))
+									.put("idReversionNeivor", NeivorRows.ID_REVERSION.apply(row)));
+						}
+					}
+					return reversionesNeivor;
+				});
+	}
+
+	/**
+	 * Publishes a payment order state change for the subscribers (see NeivorEventHandler)
+	 * @param shard Shard of the payment order
+	 * @param codigo Payment order code
+	 * @param pagado New payment order state
+	 */
+	private void publishPaymentOrderChange(Shard shard, String codigo, boolean pagado) {
+		shard.execute(client -> client.preparedQuery(NeivorQueries.SELECT_ORDEN_PAGO_DEPARTAMENTO)
+				.collecting(Rows.single(NeivorRows.DEPARTAMENTO)).execute(Tuple.of(codigo)), resDepartamento -> {
+			String departamento = resDepartamento.succeeded() ? resDepartamento.result().value() : null;
+			eventBus.publish(NeivorAddress.ORDEN_PAGO_CAMBIO, new JsonObject()
+					.put("codigo", codigo)
+					.put("pagado", pagado)
+					.put("departamento", departamento));
+		});
+	}
+
+	/**
+	 * Paid payment orders searching from a code in all the Neivor shards, for the reconciliation
+	 * @param message Request with desde and limite
+	 */
+	public void getPaidPaymentOrders(Message<JsonObject> message) {
+		String desde = message.body().getString("desde");
+		int limite = message.body().getInteger("limite");
+
+		shards.merge(shard -> this.<JsonObject>queryPage(shard, NeivorQueries.SELECT_ORDENES_PAGO_PAGADAS, Tuple.of(desde, limite), NeivorRows.ORDEN_PAGADA),
+				Comparator.comparing((JsonObject orden) -> orden.getString("codigo")), limite)
+			.onComplete(resOrdenes -> {
+				if(resOrdenes.succeeded()) {
+					message.reply(new JsonObject().put("ordenes", new JsonArray(resOrdenes.result())));
+				} else {
+					message.fail(501, "ordenes_pago");
+				}
+			});
+	}
+
+	/**
+	 * Reversions searching from an id in all the Neivor shards, for the reconciliation
+	 * @param message Request with desde and limite
+	 */
+	public void getReversions(Message<JsonObject> message) {
+		long desde = message.body().getLong("desde");
+		int limite = message.body().getInteger("limite");
+
+		shards.merge(shard -> this.<JsonObject>queryPage(shard, NeivorQueries.SELECT_REVERSIONES, Tuple.of(desde, limite), NeivorRows.REVERSION),
+				Comparator.comparing((JsonObject reversion) -> reversion.getLong("idReversion")), limite)
+			.onComplete(resReversiones -> {
+				if(resReversiones.succeeded()) {
+					message.reply(new JsonObject().put("reversiones", new JsonArray(resReversiones.result())));
+				} else {
+					message.fail(501, "reversiones");
+				}
+			});
+	}
+
+	/**
+	 * @param shard Shard to be read
+	 * @param sql SQL statement
+	 * @param params Statement parameters
+	 * @param mapper Maps every row
+	 * @return Mapped rows of the shard
+	 */
+	private <T> Future<List<T>> queryPage(Shard shard, String sql, Tuple params, Function<Row, T> mapper) {
+		Promise<List<T>> promise = Promise.promise();
+		shard.execute(client -> client.preparedQuery(sql).collecting(Rows.list(mapper)).execute(params).map(SqlResult::value), promise);
+		return promise.future();
+	}
+}
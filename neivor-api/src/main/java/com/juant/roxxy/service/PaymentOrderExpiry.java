@@ -0,0 +1,245 @@
+package com.juant.roxxy.service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.juant.roxxy.core.RoxxyAddress;
+import com.juant.roxxy.core.Shard;
+import com.juant.roxxy.query.NeivorQueries;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Lock;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Moves the unpaid payment orders older than neivor.expiry.age days, with their details, to the
+ * neivor_ordenes_pago_archivo and neivor_ordenes_pago_detalles_archivo tables. Their services can be paid with a new
+ * payment order and the tables read by generatePaymentOrder stay small. Every batch is moved in its own transaction, with a
+ * pause between batches so the job does not compete with the requests for the pool, and the job runs again after the
+ * interval once there is nothing to move. A run reads the expired payment orders in creation date and code order, every
+ * batch after the last one read by the previous batch, so the payment orders that are kept do not stop the run; they are
+ * read again by the next run. The amount of every payment order moved goes back from the unpaid amount to the
+ * amount without payment order of its department balance in the same transaction (see DepartmentBalanceCheck). Every
+ * shard has its own job and only one instance of the verticle runs the job of a shard at a time. Archived payment orders still count for the code of new payment orders
+ * (see NeivorQueries.SELECT_CUENTA_ORDENES_PAGO).
+ * Roxxy marks payment orders as paid some time after the payment (see OutboxRelay), so a payment order is not archived
+ * while it may be paid in Roxxy:
+ * <ul>
+ * 	<li>Roxxy reserves the payment order before saving a payment (see NeivorAddress.ORDEN_PAGO_RESERVAR), the reservation
+ * 	waits for the lock of a batch being archived</li>
+ * 	<li>Every batch reads the expired payment orders without locks and asks Roxxy over the event bus which of them have a
+ * 	payment or pending updates (see RoxxyAddress.ORDENES_PAGO_COBRADAS), the batch fails if Roxxy does not answer</li>
+ * 	<li>The rest are locked and archived in a transaction, except the ones reserved less than neivor.expiry.reservation
+ * 	milliseconds before the batch was read: their payment may be saved after Roxxy answered</li>
+ * </ul>
+ * A payment saved within neivor.expiry.reservation milliseconds of its reservation, which is longer than the make-payment
+ * deadline, is always seen by Roxxy or keeps the payment order, and no lock is held while Roxxy is asked.
+ * The following keys are available:
+ * <ul>
+ * 	<li><b>neivor.expiry.enabled</b>: runs the job (default true)</li>
+ * 	<li><b>neivor.expiry.age</b>: days after which an unpaid payment order expires (default 30)</li>
+ * 	<li><b>neivor.expiry.batch.size</b>: payment orders moved in a transaction (default 100)</li>
+ * 	<li><b>neivor.expiry.pause</b>: milliseconds between batches (default 1000)</li>
+ * 	<li><b>neivor.expiry.interval</b>: milliseconds between runs (default 3600000)</li>
+ * 	<li><b>neivor.expiry.timeout</b>: milliseconds to wait for the payment orders paid in Roxxy (default 10000)</li>
+ * 	<li><b>neivor.expiry.reservation</b>: milliseconds a payment order reserved for a payment does not expire (default 600000)</li>
+ * </ul>
+ * @author Juan Tzun
+ *
+ */
+public class PaymentOrderExpiry {
+
+	private static final String LOCK = "neivor.expiry";
+	private static final LocalDateTime FIRST = LocalDateTime.of(1000, 1, 1, 0, 0);
+
+	private final Shard shard;
+	private Vertx vertx;
+
+	private boolean enabled;
+	private int age;
+	private int batchSize;
+	private long pause;
+	private long interval;
+	private long timeout;
+	private long reservation;
+
+	//Payment orders moved in the current run
+	private int expired;
+
+	//Creation date and code of the last payment order read in the current run
+	private LocalDateTime fechaCursor = FIRST;
+	private String codigoCursor = "";
+
+	/**
+	 * Constructor with parameters.
+	 * @param shard Shard of Neivor database
+	 * @param config Application config
+	 */
+	public PaymentOrderExpiry(Shard shard, JsonObject config) {
+		this.shard = shard;
+		this.configure(config);
+	}
+
+	/**
+	 * Reads the neivor.expiry.* settings, used from the next batch
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		this.enabled = config.getBoolean("neivor.expiry.enabled", true);
+		this.age = Math.max(config.getInteger("neivor.expiry.age", 30), 1);
+		this.batchSize = Math.max(config.getInteger("neivor.expiry.batch.size", 100), 1);
+		this.pause = Math.max(config.getLong("neivor.expiry.pause", 1000L), 1L);
+		this.interval = Math.max(config.getLong("neivor.expiry.interval", 3600000L), 1L);
+		this.timeout = Math.max(config.getLong("neivor.expiry.timeout", 10000L), 1L);
+		this.reservation = Math.max(config.getLong("neivor.expiry.reservation", 600000L), 1L);
+	}
+
+	/**
+	 * Starts the job
+	 * @param vertx The entry point into the Vert.x Core API.
+	 */
+	public void register(Vertx vertx) {
+		this.vertx = vertx;
+		this.schedule(interval);
+	}
+
+	/**
+	 * @param delay Milliseconds until the next batch
+	 */
+	private void schedule(long delay) {
+		vertx.setTimer(delay, timer -> this.expire());
+	}
+
+	/**
+	 * Moves a batch if the job is enabled and no other instance is running it, then schedules the next batch: after the
+	 * pause if a full batch was read, even if some of its payment orders were kept, otherwise after the interval
+	 */
+	private void expire() {
+		if(!enabled) {
+			this.schedule(interval);
+			return;
+		}
+		vertx.sharedData().getLocalLockWithTimeout(LOCK+"."+shard.getName(), 10L, resLock -> {
+			if(resLock.failed()) {
+				this.schedule(interval);
+				return;
+			}
+			Lock lock = resLock.result();
+			this.expireBatch(resBatch -> {
+				lock.release();
+				if(resBatch.succeeded()) {
+					if(resBatch.result()==batchSize) {
+						this.schedule(pause);
+						return;
+					}
+					if(expired>0) {
+						System.out.println("Expired "+expired+" payment orders in "+shard.getName());
+					}
+				} else {
+					System.out.println("Payment orders expiry failed in "+shard.getName()+": "+resBatch.cause().getMessage());
+				}
+				expired = 0;
+				fechaCursor = FIRST;
+				codigoCursor = "";
+				this.schedule(interval);
+			});
+		});
+	}
+
+	/**
+	 * Reads the next expired payment orders, asks Roxxy which of them are paid and moves the rest in a transaction. The
+	 * payment orders moved are added to the run count.
+	 * @param handler Called with the number of payment orders read
+	 */
+	private void expireBatch(Handler<AsyncResult<Integer>> handler) {
+		Promise<RowSet<Row>> vencidas = Promise.promise();
+		shard.execute(client -> client.preparedQuery(NeivorQueries.SELECT_ORDENES_PAGO_VENCIDAS)
+				.execute(Tuple.of(age, fechaCursor, fechaCursor, codigoCursor, batchSize)), vencidas);
+		vencidas.future().compose(resVencidas -> {
+			List<String> codigos = new ArrayList<>();
+			LocalDateTime lectura = null;
+			for(Row row : resVencidas) {
+				codigos.add(row.getString(0));
+				fechaCursor = row.getLocalDateTime(1);
+				codigoCursor = row.getString(0);
+				lectura = row.getLocalDateTime(2);
+			}
+			if(codigos.isEmpty()) {
+				return Future.succeededFuture(0);
+			}
+
+			//Reserved before this time, the payment was saved before Roxxy answers
+			LocalDateTime reservadas = lectura.minus(reservation, ChronoUnit.MILLIS);
+			JsonObject request = new JsonObject().put("codigos", new JsonArray(new ArrayList<>(codigos)));
+			return vertx.eventBus().<JsonObject>request(RoxxyAddress.ORDENES_PAGO_COBRADAS, request, new DeliveryOptions().setSendTimeout(timeout))
+					.compose(resCobradas -> {
+						JsonArray cobradas = resCobradas.body().getJsonArray("codigos", new JsonArray());
+						List<Tuple> candidatas = new ArrayList<>();
+						for(String codigo : codigos) {
+							if(!cobradas.contains(codigo)) {
+								candidatas.add(Tuple.of(codigo, reservadas));
+							}
+						}
+						if(candidatas.isEmpty()) {
+							return Future.succeededFuture(codigos.size());
+						}
+						Promise<Integer> archivadas = Promise.promise();
+						shard.execute(client -> client.withTransaction(connection -> this.archive(connection, candidatas)), archivadas);
+						return archivadas.future().map(movidas -> {
+							expired += movidas;
+							return codigos.size();
+						});
+					});
+		}).onComplete(handler);
+	}
+
+	/**
+	 * Locks the candidates that are still unpaid and not reserved, then moves them
+	 * @param connection Connection of the transaction
+	 * @param candidatas Codes of the payment orders not paid in Roxxy, with the reservation limit
+	 * @return Number of payment orders moved
+	 */
+	private Future<Integer> archive(SqlConnection connection, List<Tuple> candidatas) {
+		return connection.preparedQuery(NeivorQueries.SELECT_ORDEN_PAGO_VENCIDA).executeBatch(candidatas)
+				.compose(resVencidas -> {
+					//The batch has a result for every candidate
+					List<Tuple> codigos = new ArrayList<>();
+					for(RowSet<Row> resVencida = resVencidas; resVencida!=null; resVencida = resVencida.next()) {
+						for(Row row : resVencida) {
+							codigos.add(Tuple.of(row.getString(0)));
+						}
+					}
+					return this.move(connection, codigos);
+				});
+	}
+
+	/**
+	 * Moves the amounts of the department balances, archives the details and the payment orders, then deletes them
+	 * @param connection Connection of the transaction
+	 * @param codigos Codes of the payment orders to move
+	 * @return Number of payment orders moved
+	 */
+	private Future<Integer> move(SqlConnection connection, List<Tuple> codigos) {
+		if(codigos.isEmpty()) {
+			return Future.succeededFuture(0);
+		}
+		return connection.preparedQuery(NeivorQueries.UPSERT_SALDO_ORDEN_PAGO_VENCIDA).executeBatch(codigos)
+				.compose(res -> connection.preparedQuery(NeivorQueries.ARCHIVE_ORDEN_PAGO_DETALLES).executeBatch(codigos))
+				.compose(res -> connection.preparedQuery(NeivorQueries.DELETE_ORDEN_PAGO_DETALLES).executeBatch(codigos))
+				.compose(res -> connection.preparedQuery(NeivorQueries.ARCHIVE_ORDEN_PAGO).executeBatch(codigos))
+				.compose(res -> connection.preparedQuery(NeivorQueries.DELETE_ORDEN_PAGO).executeBatch(codigos))
+				.map(codigos.size());
+	}
+}
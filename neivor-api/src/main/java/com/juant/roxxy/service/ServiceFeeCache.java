@@ -0,0 +1,155 @@
+package com.juant.roxxy.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collector;
+
+import com.juant.roxxy.entity.Money;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+
+/**
+ * Fee schedules of the services (neivor_servicios_cuotas) by shard and service id, least recently used first. The fees of
+ * a service do not change once it is created, so an entry is never refreshed, only evicted when there are more than
+ * neivor.fees.cache.entries services (default 10000). Every schedule is kept in arrays by column instead of a list of
+ * Pago objects. Schedules are loaded for all the services of a payment order with one query (see
+ * NeivorQueries.SELECT_ORDEN_PAGO_CUOTAS and collector), services without fees are kept with an empty schedule.
+ * The cache belongs to a verticle instance and is only used from its event loop.
+ * @author Juan Tzun
+ *
+ */
+public class ServiceFeeCache {
+
+	private final Map<Long, Cuotas> cuotas;
+	private int maxEntries;
+
+	/**
+	 * Constructor with parameters.
+	 * @param config Application config
+	 */
+	public ServiceFeeCache(JsonObject config) {
+		this.cuotas = new LinkedHashMap<Long, Cuotas>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Cuotas> eldest) {
+				return size()>maxEntries;
+			}
+		};
+		this.configure(config);
+	}
+
+	/**
+	 * Reads the neivor.fees.cache.entries setting, used from the next entry
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		this.maxEntries = Math.max(config.getInteger("neivor.fees.cache.entries", 10000), 0);
+	}
+
+	/**
+	 * @param shard Position of the shard of the service
+	 * @param servicio Service id
+	 * @return Fees of the service as [{numeroCuota, detalleCuota, fechaVencimiento, importeCuota, importeComision}], null if
+	 * they are not cached
+	 */
+	public JsonArray get(int shard, int servicio) {
+		Cuotas cuotasServicio = cuotas.get(key(shard, servicio));
+		return cuotasServicio!=null ? cuotasServicio.toJson() : null;
+	}
+
+	/**
+	 * Caches the schedules of the services of a payment order
+	 * @param shard Position of the shard of the services
+	 * @param servicios Ids of the payment order services
+	 * @param loaded Schedules read by service id, services without fees are not in it
+	 */
+	public void putAll(int shard, List<Integer> servicios, Map<Integer, Cuotas> loaded) {
+		for(Integer servicio : servicios) {
+			cuotas.put(key(shard, servicio), loaded.getOrDefault(servicio, Cuotas.EMPTY));
+		}
+	}
+
+	/**
+	 * @return Collector of the rows of SELECT_ORDEN_PAGO_CUOTAS into schedules by service id, the rows come in service order
+	 */
+	public static Collector<Row, ?, Map<Integer, Cuotas>> collector() {
+		return Collector.<Row, Map<Integer, List<Row>>, Map<Integer, Cuotas>>of(LinkedHashMap::new,
+				(rows, row) -> rows.computeIfAbsent(row.getInteger(0), servicio -> new ArrayList<>()).add(row),
+				(first, second) -> {
+					first.putAll(second);
+					return first;
+				},
+				rows -> {
+					Map<Integer, Cuotas> schedules = new LinkedHashMap<>();
+					for(Map.Entry<Integer, List<Row>> servicio : rows.entrySet()) {
+						schedules.put(servicio.getKey(), new Cuotas(servicio.getValue()));
+					}
+					return schedules;
+				});
+	}
+
+	/**
+	 * @param shard Position of the shard
+	 * @param servicio Service id
+	 * @return Key of the service, ids of different shards can be the same
+	 */
+	private static long key(int shard, int servicio) {
+		return ((long) shard<<32) | (servicio & 0xffffffffL);
+	}
+
+	/**
+	 * Fee schedule of a service, one position of every array for every fee in fee number order. Amounts in cents (see Money).
+	 */
+	public static final class Cuotas {
+
+		private static final Cuotas EMPTY = new Cuotas(Collections.emptyList());
+
+		private final int[] numeroCuota;
+		private final String[] detalleCuota;
+		private final String[] fechaVencimiento;
+		private final long[] importeCuota;
+		private final long[] importeComision;
+
+		/**
+		 * @param rows Rows of SELECT_ORDEN_PAGO_CUOTAS of the service
+		 */
+		private Cuotas(List<Row> rows) {
+			int size = rows.size();
+			this.numeroCuota = new int[size];
+			this.detalleCuota = new String[size];
+			this.fechaVencimiento = new String[size];
+			this.importeCuota = new long[size];
+			this.importeComision = new long[size];
+			for(int i = 0; i<size; i++) {
+				Row row = rows.get(i);
+				numeroCuota[i] = row.getInteger(1);
+				detalleCuota[i] = row.getString(2);
+				fechaVencimiento[i] = row.getString(3);
+				importeCuota[i] = Money.fromDecimal(row.getBigDecimal(4));
+				importeComision[i] = Money.fromDecimal(row.getBigDecimal(5));
+			}
+		}
+
+		/**
+		 * @return Fees with the fields of Pago, amounts as decimal numbers like Money.Serializer
+		 */
+		public JsonArray toJson() {
+			JsonArray json = new JsonArray(new ArrayList<>(numeroCuota.length));
+			for(int i = 0; i<numeroCuota.length; i++) {
+				json.add(new JsonObject()
+						.put("numeroCuota", numeroCuota[i])
+						.put("detalleCuota", detalleCuota[i])
+						.put("fechaVencimiento", fechaVencimiento[i])
+						.put("importeCuota", Money.toDecimal(importeCuota[i]))
+						.put("importeComision", Money.toDecimal(importeComision[i])));
+			}
+			return json;
+		}
+	}
+}
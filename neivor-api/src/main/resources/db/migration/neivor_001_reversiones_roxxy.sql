@@ -0,0 +1,6 @@
+-- Neivor schema changes of the reversions created by the Roxxy outbox relay (see NeivorService.updatePaymentOrderState).
+-- Run once on every Neivor shard, in file order, before deploying the version that uses them.
+
+-- Roxxy reversion id, a reversion sent again by the relay is not created twice
+ALTER TABLE neivor_reversiones ADD COLUMN id_reversion_roxxy BIGINT NULL;
+ALTER TABLE neivor_reversiones ADD UNIQUE INDEX ux_neivor_reversiones_roxxy (id_reversion_roxxy);
@@ -0,0 +1,17 @@
+-- Neivor schema changes of the payment order expiry (see PaymentOrderExpiry) and of the payment orders by department
+-- (see NeivorHandler.getPaymentOrdersByDepartment). generatePaymentOrder counts the archived payment orders for the next
+-- code, so this script is needed also with neivor.expiry.enabled set to false.
+-- Run once on every Neivor shard, in file order, before deploying the version that uses them.
+
+-- Creation date of the payment orders, the existing ones get the date of the migration
+ALTER TABLE neivor_ordenes_pago ADD COLUMN fecha_creacion DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+-- Expired payment orders, oldest first
+ALTER TABLE neivor_ordenes_pago ADD INDEX ix_neivor_ordenes_pago_vencidas (pagado, fecha_creacion, codigo);
+
+-- Payment orders of a department, newest first
+ALTER TABLE neivor_ordenes_pago ADD INDEX ix_neivor_ordenes_pago_departamento (numero_departamento, fecha_creacion, codigo);
+
+-- Archived payment orders and details, with the columns of the live tables
+CREATE TABLE neivor_ordenes_pago_archivo LIKE neivor_ordenes_pago;
+CREATE TABLE neivor_ordenes_pago_detalles_archivo LIKE neivor_ordenes_pago_detalles;
@@ -0,0 +1,5 @@
+-- Neivor schema change of the payment order reservations (see NeivorAddress.ORDEN_PAGO_RESERVAR and PaymentOrderExpiry).
+-- Run once on every Neivor shard, in file order, before deploying the version that uses it.
+
+-- Last time Roxxy reserved the payment order for a payment, it does not expire for neivor.expiry.reservation milliseconds
+ALTER TABLE neivor_ordenes_pago ADD COLUMN fecha_reserva DATETIME NULL;
@@ -0,0 +1,11 @@
+-- Neivor schema change of the department balances (see NeivorHandler.getBalanceByDepartment and DepartmentBalanceCheck).
+-- Run once on every Neivor shard, in file order, before deploying the version that uses it. The table is filled by the
+-- first balance check; numero_departamento must have the type of neivor_ordenes_pago.numero_departamento.
+
+-- Amount of the services without payment order and of the unpaid payment orders of every department
+CREATE TABLE neivor_saldos_departamento (
+	numero_departamento VARCHAR(20) NOT NULL,
+	sin_orden DECIMAL(12,2) NOT NULL DEFAULT 0,
+	por_pagar DECIMAL(12,2) NOT NULL DEFAULT 0,
+	PRIMARY KEY (numero_departamento)
+);
@@ -0,0 +1,56 @@
+package com.juant.roxxy.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import org.junit.Test;
+
+/**
+ * Unit test for PageCursor.
+ * @author Juan Tzun
+ *
+ */
+public class PageCursorTest {
+
+	@Test
+	public void decodesTheEncodedPosition() {
+		LocalDateTime fecha = LocalDateTime.of(2024, 3, 15, 10, 30, 5);
+		PageCursor cursor = PageCursor.decode(PageCursor.encode(fecha.toString(), "012"));
+		assertEquals(fecha, cursor.getFechaCreacion());
+		assertEquals("012", cursor.getCodigo());
+	}
+
+	@Test
+	public void keepsTheSeparatorInTheCode() {
+		PageCursor cursor = PageCursor.decode(PageCursor.encode("2024-03-15T10:30:05.123", "A|B"));
+		assertEquals(LocalDateTime.of(2024, 3, 15, 10, 30, 5, 123000000), cursor.getFechaCreacion());
+		assertEquals("A|B", cursor.getCodigo());
+	}
+
+	@Test
+	public void encodesUrlSafeTextWithoutPadding() {
+		for(int i = 0; i<20; i++) {
+			String cursor = PageCursor.encode("2024-03-15T10:30:05", "??>>"+i);
+			assertFalse(cursor, cursor.contains("=") || cursor.contains("+") || cursor.contains("/"));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidBase64() {
+		PageCursor.decode("no es base64!");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsCursorsWithoutCode() {
+		PageCursor.decode(Base64.getUrlEncoder().withoutPadding().encodeToString("2024-03-15T10:30:05".getBytes()));
+	}
+
+	@Test(expected = DateTimeParseException.class)
+	public void rejectsInvalidDates() {
+		PageCursor.decode(PageCursor.encode("20240315", "012"));
+	}
+}
@@ -0,0 +1,106 @@
+package com.juant.roxxy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.juant.roxxy.core.ApiVerticle;
+import com.juant.roxxy.core.Shard;
+import com.juant.roxxy.core.ShardRouter;
+import com.juant.roxxy.core.WarmUpRequest;
+import com.juant.roxxy.handler.RoxxyHandler;
+import com.juant.roxxy.query.RoxxyQueries;
+import com.juant.roxxy.service.CustomerCodes;
+import com.juant.roxxy.service.OutboxRelay;
+import com.juant.roxxy.service.Reconciliation;
+import com.juant.roxxy.service.RoxxyService;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+
+/**
+ * Component designed to run inside Vertx. Contains web service settings for Roxxy stores.
+ * Neivor payment orders are reached over the event bus (see NeivorAddress), their state updates are applied by
+ * the outbox relay (see OutboxRelay) and reconciled every night (see Reconciliation). Unknown customer codes are
+ * rejected without a query (see CustomerCodes). Neivor checks the Roxxy payments over the event bus (see RoxxyService).
+ * The Roxxy database can be split in shards by customer code, listed in roxxy.shards (see ApiVerticle.createShards).
+ * @author Juan Tzun
+ *
+ */
+public class RoxxyApiVerticle extends ApiVerticle {
+
+	private RoxxyHandler roxxyHandler;
+	private final List<OutboxRelay> outboxRelays = new ArrayList<>();
+	private Reconciliation reconciliation;
+	private CustomerCodes customerCodes;
+
+	@Override
+	protected String getConfigPrefix() {
+		return "roxxy";
+	}
+
+	@Override
+	protected String getMountPoint() {
+		return "/api/roxxy/";
+	}
+
+	@Override
+	protected Router createAPISubRouter() {
+		ShardRouter roxxyShards = createShards("roxxy");
+
+		for(Shard shard : roxxyShards.getShards()) {
+			outboxRelays.add(new OutboxRelay(shard, config()));
+		}
+		reconciliation = new Reconciliation(roxxyShards, config());
+		customerCodes = new CustomerCodes(roxxyShards, config());
+
+		//The training run does not start the jobs, without the customer codes filter every code may exist
+		if(!isTraining()) {
+			for(OutboxRelay outboxRelay : outboxRelays) {
+				outboxRelay.register(vertx);
+			}
+			reconciliation.register(vertx);
+			customerCodes.register(vertx);
+		}
+
+		new RoxxyService(roxxyShards).register(vertx);
+
+		roxxyHandler = new RoxxyHandler(roxxyShards, getRateLimiter(), reconciliation, customerCodes, config());
+		return roxxyHandler.getAPISubRouter(vertx);
+	}
+
+	@Override
+	protected List<String> getStatements(String database) {
+		return RoxxyQueries.ALL;
+	}
+
+	@Override
+	protected void applyConfig(JsonObject config) {
+		roxxyHandler.configure(config);
+		for(OutboxRelay outboxRelay : outboxRelays) {
+			outboxRelay.configure(config);
+		}
+		reconciliation.configure(config);
+		customerCodes.configure(config);
+	}
+
+	/**
+	 * Authorized requests rejected by body validation, they run the API code without touching the database
+	 */
+	@Override
+	protected List<WarmUpRequest> getWarmUpRequests() {
+		return Arrays.asList(
+				this.authorize(new WarmUpRequest(HttpMethod.POST, "/api/roxxy/condominium/search-payments", "{\"codigoBusqueda\":\"0\",\"codServicio\":\"0\"}")),
+				this.authorize(new WarmUpRequest(HttpMethod.POST, "/api/roxxy/condominium/make-payment", "{}")),
+				this.authorize(new WarmUpRequest(HttpMethod.DELETE, "/api/roxxy/condominium/payment-reversion", "{}")));
+	}
+
+	private WarmUpRequest authorize(WarmUpRequest request) {
+		return request
+				.putHeader("usuario", "USUARIO_AUTORIZADO")
+				.putHeader("password", "12D1ERE5S4R5SR4WER4SD4S5DF4S5S5F4")
+				.putHeader("entidad", "WARMUP")
+				.putHeader("content-type", "application/json");
+	}
+}
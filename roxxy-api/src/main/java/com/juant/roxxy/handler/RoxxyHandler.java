@@ -0,0 +1,686 @@
+package com.juant.roxxy.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.juant.roxxy.core.Deadline;
+import com.juant.roxxy.core.JsonResponseWriter;
+import com.juant.roxxy.core.NeivorAddress;
+import com.juant.roxxy.core.RateLimiter;
+import com.juant.roxxy.core.RequestReader;
+import com.juant.roxxy.core.Rows;
+import com.juant.roxxy.core.Shard;
+import com.juant.roxxy.core.ShardRouter;
+import com.juant.roxxy.core.WarmUpRequest;
+import com.juant.roxxy.entity.ConstanciaPago;
+import com.juant.roxxy.entity.Money;
+import com.juant.roxxy.entity.Pago;
+import com.juant.roxxy.request.ConsultaRequest;
+import com.juant.roxxy.request.PagoRequest;
+import com.juant.roxxy.request.ReversionRequest;
+import com.juant.roxxy.response.ConsultaResponse;
+import com.juant.roxxy.response.ReversionResponse;
+import com.juant.roxxy.service.CustomerCodes;
+import com.juant.roxxy.service.Reconciliation;
+import com.juant.roxxy.query.RoxxyQueries;
+import com.juant.roxxy.query.RoxxyRows;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.mysqlclient.MySQLClient;
+import io.vertx.mysqlclient.MySQLException;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Handles API routing for Roxxy. Customers are kept in the shard of their customer code (codigoBusqueda). Payments, their
+ * reversions and their outbox updates are kept in the shard of the payment order code, so the unique index of
+ * roxxy_pagos.orden_pago sees every payment of a payment order and all the updates of a payment order are relayed in
+ * order (see ShardRouter.route). Payment ids are generated with auto_increment_increment set to the stride and
+ * auto_increment_offset to the position of the shard plus one, so a payment id leads to its shard (see ShardRouter.routeNumber).
+ * @author Juan Tzun
+ *
+ */
+public class RoxxyHandler {
+	
+	//MySQL error of a duplicate key in a unique index
+	private static final int DUPLICATE_KEY = 1062;
+	
+	private final ShardRouter shards;
+	private final RateLimiter rateLimiter;
+	private final Reconciliation reconciliation;
+	private final CustomerCodes customerCodes;
+	private final JsonResponseWriter responseWriter;
+	private final RequestReader requestReader;
+	private final Deadline deadline;
+	
+	/**
+	 * Constructor with parameters.
+	 * @param shards Shards of Roxxy database, by customer code
+	 * @param rateLimiter Rate limits by entity
+	 * @param reconciliation Reconciliation with Neivor
+	 * @param customerCodes Filter of the customer codes
+	 * @param config Application config
+	 */
+	public RoxxyHandler(ShardRouter shards, RateLimiter rateLimiter, Reconciliation reconciliation, CustomerCodes customerCodes, JsonObject config) {
+		this.shards = shards;
+		this.rateLimiter = rateLimiter;
+		this.reconciliation = reconciliation;
+		this.customerCodes = customerCodes;
+		this.responseWriter = new JsonResponseWriter(config);
+		this.requestReader = new RequestReader(config);
+		this.deadline = new Deadline(config, routingContext -> this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject(), "504", ""));
+	}
+
+	/**
+	 * Applies a new config without restart
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		responseWriter.configure(config);
+		requestReader.configure(config);
+		deadline.configure(config);
+	}
+	
+	/**
+	 * Creates configuration for database connection and defines all available routes starting by /api/roxxy.
+	 * The following APIs are available:
+	 * <ul>
+	 * 	<li>POST /api/condominium/search-payments (see searchPaymentsByServiceCode)</li>
+	 * 	<li>POST /api/condominium/make-payment (see makePaymentForCondominium)</li>
+	 * 	<li>DELETE /api/condominium/payment-reversion (see revertPaymentForCondominium)</li>
+	 * 	<li>GET /api/roxxy/reconciliation (see getReconciliationReport)</li>
+	 * </ul>
+	 * @param vertx The entry point into the Vert.x Core API. 
+	 * @return Router with Roxxy routes
+	 */
+	public Router getAPISubRouter(Vertx vertx) {
+		
+		Router apiSubRouter = Router.router(vertx);
+		
+		//API Routing
+    	apiSubRouter.route("/*").handler(this::defaultProcessorForRoxxyAPI);
+    	apiSubRouter.route("/condominium*").handler(requestReader.getBodyHandler()).failureHandler(this::rejectRequestBody);
+    	apiSubRouter.post("/condominium/search-payments").handler(deadline.route("search-payments")).handler(this::searchPaymentsByServiceCode);
+    	apiSubRouter.post("/condominium/make-payment").handler(deadline.route("make-payment")).handler(this::makePaymentForCondominium);
+    	apiSubRouter.delete("/condominium/payment-reversion").handler(deadline.route("payment-reversion")).handler(this::revertPaymentForCondominium);
+    	apiSubRouter.get("/reconciliation").handler(this::getReconciliationReport);
+    	
+		return apiSubRouter;
+	}
+	
+	/**
+	 * Called for all default API HTTP GET, POST, PUT and DELETE. Enables cross origin
+	 * The process to be executed is as follows:
+	 * <ol>
+	 * 	<li>User and password validation</li>
+	 * 	<li>Password validation</li>
+	 * 	<li>User validation</li>
+	 * 	<li>Entity validation</li>
+	 * 	<li>Credentials validation</li>
+	 * 	<li>Entity rate limit validation (see RateLimiter), except for the warm up requests (see WarmUpRequest)</li>
+	 * </ol>
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	public void defaultProcessorForRoxxyAPI(RoutingContext routingContext) {
+    	
+		//Recovering fields from headers request
+    	String usuario = routingContext.request().headers().get("usuario");
+    	String password = routingContext.request().headers().get("password");
+    	String entidad = routingContext.request().headers().get("entidad");
+    	
+    	//User and password validation
+    	if(usuario == null && password == null) {
+    		this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject(), "401", "");
+    	} else if(password == null) {
+    		this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject(), "402", "");
+    	} else if(usuario == null) {
+    		this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject(), "403", "");
+    	} else if(entidad == null) {
+    		this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject(), "404", "");
+    	} else if(!usuario.equalsIgnoreCase("USUARIO_AUTORIZADO") || !password.equalsIgnoreCase("12D1ERE5S4R5SR4WER4SD4S5DF4S5S5F4")){
+    		this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject(), "405", "");
+    	} else if(!WarmUpRequest.isWarmUp(routingContext) && !rateLimiter.tryAcquire(entidad)) {
+    		this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject(), "406", "");
+    	} else {
+    		//Allowing CORS - Cross Domain API calls
+    		routingContext.response().putHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN,"*");
+    		routingContext.response().putHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS,"GET,POST,PUT,DELETE");
+    		routingContext.response().putHeader(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, "*");
+    		
+    		//Call the next matching route
+        	routingContext.next();
+    	}
+    }
+	
+	/**
+	 * Payment order searching by service code (payment order code) and customer code. Payment order information is deployed in
+	 * JSON format and it includes the payment order amount, customer name, customer code, service code and all fees (if apply).
+	 * The process to be executed is as follows:
+	 * <ol>
+	 * 	<li>Body validation</li>
+	 * 	<li>CodServicio and CodigoBusqueda format validation</li>
+	 * 	<li>Customer code validation with the customer code filter (see CustomerCodes)</li>
+	 * 	<li>Customer code searching in Roxxy database</li>
+	 * 	<li>Payment order code searching in Neivor</li>
+	 * 	<li>Searching payment order details and fees (if aplies) in Neivor</li>
+	 * </ol>
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	public void searchPaymentsByServiceCode(RoutingContext routingContext) {
+		
+		//Recovering fields from body request
+		ConsultaRequest request = requestReader.read(routingContext, ConsultaRequest.class);
+		String codigoBusqueda = request!=null ? request.getCodigoBusqueda() : null;
+		String codServicio = request!=null ? request.getCodServicio() : null;
+		
+		//Response to be sent in routingContext.end()
+		ConsultaResponse response = new ConsultaResponse();
+		response.setCodigoBusqueda(codigoBusqueda);
+		response.setCodigoServicio(codServicio);
+		
+		//CodServicio and CodigoBusqueda format validation
+		if(codServicio==null || codigoBusqueda==null) {
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "502", "");
+		} else if(codServicio.length()!=3){
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "503", "CodServicio");
+		} else if(codigoBusqueda.length()>14) {
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "503", "CodigoBusqueda");
+		} else if(!customerCodes.mightExist(codigoBusqueda)) {
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "CÓDIGO DE DEPOSITANTE NO EXISTENTE");
+		} else {
+			final String codigoOrden = codServicio;
+			final String codigoBusquedaF = codigoBusqueda;
+			Shard shard = shards.route(codigoBusqueda);
+			
+			//Customer code searching in Roxxy database
+			Deadline.query(routingContext, shard.getBreaker(), shard.getClient(), RoxxyQueries.SELECT_CLIENTE).collecting(Rows.single(RoxxyRows.CLIENTE))
+				.execute(Tuple.of(codigoBusqueda), resCliente -> {
+					if(resCliente.succeeded()) {
+						if(resCliente.result()!=null && resCliente.result().size()>0) {
+							
+							//Payment order code searching in Neivor
+							this.requestNeivor(routingContext, response, NeivorAddress.ORDEN_PAGO_CONSULTAR, new JsonObject().put("codigo", codigoOrden), orden -> {
+								if(!orden.getBoolean("pagado")) {
+									
+									//Searching payment order details and fees in Neivor
+									this.requestNeivor(routingContext, response, NeivorAddress.ORDEN_PAGO_SERVICIOS, new JsonObject().put("codigo", codigoOrden), resServicios -> {
+										JsonArray servicios = resServicios.getJsonArray("servicios");
+										if(servicios.size()>0) {
+											response.setCodigoBusqueda(codigoBusquedaF);
+											response.setCodigoServicio(codigoOrden);
+											
+											response.setNombreCliente(resCliente.result().value());
+											
+											long importeAdeudado = 0L;
+											List<Pago> pagos = new ArrayList<>();
+											for(int i = 0; i<servicios.size(); i++) {
+												JsonObject servicio = servicios.getJsonObject(i);
+												JsonArray cuotas = servicio.getJsonArray("cuotas");
+												if(cuotas.size()>0) {
+													for(int j = 0; j<cuotas.size(); j++) {
+														pagos.add(cuotas.getJsonObject(j).mapTo(Pago.class));
+													}
+												} else {
+													importeAdeudado += servicio.getLong("importeAdeudado");
+												}
+											}
+											response.setImporteAdeudado(importeAdeudado);
+											response.setPagos(pagos);
+											this.getRoutingContextResponseByErrorCode(routingContext, response, "000", "");
+										} else {
+											this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "NO SE HAN ENCONTRADO SERVICIOS PARA LA ORDEN DE PAGO "+codigoOrden);
+										}
+									});
+								} else {
+									this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "ORDEN DE PAGO DESCONOCIDA");
+								}
+							});
+						} else {
+							this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "CÓDIGO DE DEPOSITANTE NO EXISTENTE");
+						}
+					} else {
+						this.getRoutingContextResponseByErrorCode(routingContext, response, "501", "clientes");
+					}
+				});
+			
+		}
+	}
+	
+	/**
+	 * Save the payment in Roxxy database and update the payment order state in Neivor database. The payment, its details
+	 * and the payment order state update are saved in one Roxxy transaction, the update is applied in Neivor afterwards
+	 * by the outbox relay (see OutboxRelay).
+	 * The process to be executed is as follows:
+	 * <ol>
+	 * 	<li>Body validation</li>
+	 * 	<li>CodigoBusqueda and FechaPago format validation</li>
+	 * 	<li>Customer code validation with the customer code filter (see CustomerCodes)</li>
+	 * 	<li>Customer code searching in Roxxy database</li>
+	 * 	<li>Payment order code and amount searching in Neivor, reserving the payment order so it does not expire while it
+	 * 	is paid (see NeivorAddress.ORDEN_PAGO_RESERVAR)</li>
+	 * 	<li>Payment order state validation (if it is not paid)</li>
+	 * 	<li>If montoTotal is the same as payment order amount</li>
+	 * 	<li>Create payment constancy in Roxxy database, rejected by the unique index of the payment order if it is already
+	 * 	paid in Roxxy database and the update is waiting for the relay</li>
+	 * 	<li>Create payment constancy details for fees in Roxxy database (if applies)</li>
+	 * 	<li>Save payment order state update to paid in Roxxy outbox</li>
+	 * </ol>
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	public void makePaymentForCondominium(RoutingContext routingContext) {
+		//Recovering fields from body request
+		PagoRequest request = requestReader.read(routingContext, PagoRequest.class);
+		
+		//Response to be sent in contextRouting.end()
+		JsonObject response = new JsonObject();
+		
+		//Body validation - CodigoBusqueda and FechaPago format validation
+		if(request==null || request.getCodigoBusqueda()==null || request.getOrdenPago()==null
+				|| request.getMontoTotal()==Money.NONE || request.getFechaPago()==null
+				|| request.getNombreFactura()==null || request.getNit()==null || request.getLugarPago()==null) {
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "502", "");
+		} else if(request.getCodigoBusqueda().length()>14){
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "503", "CodigoBusqueda");
+		}  else if(request.getFechaPago().length()>8){
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "503", "FechaPago");
+		} else if(!customerCodes.mightExist(request.getCodigoBusqueda())) {
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "CÓDIGO DE DEPOSITANTE NO EXISTENTE");
+		} else {
+			final String ordenPagoF = request.getOrdenPago();
+			final long montoTotalF = request.getMontoTotal();
+			final String fechaPagoF = request.getFechaPago();
+			final String codigoBusquedaF = request.getCodigoBusqueda();
+			Shard shard = shards.route(codigoBusquedaF);
+			
+			//Customer code searching in Roxxy database
+			Deadline.query(routingContext, shard.getBreaker(), shard.getClient(), RoxxyQueries.SELECT_CLIENTE).collecting(Rows.single(RoxxyRows.CLIENTE))
+				.execute(Tuple.of(codigoBusquedaF), resCliente -> {
+					if(resCliente.succeeded()) {
+						if(resCliente.result()!=null && resCliente.result().size()>0) {
+							
+							//Payment order code and amount searching in Neivor
+							this.requestNeivor(routingContext, response, NeivorAddress.ORDEN_PAGO_RESERVAR, new JsonObject().put("codigo", ordenPagoF), orden -> {
+								long valorPagar = orden.getLong("valorPagar");
+								boolean pagado = orden.getBoolean("pagado");
+								
+								//Payment order state validation (if it is not paid)
+								//If montoTotal is the same as payment order amount
+								if(montoTotalF==valorPagar && !pagado) {
+									String nombreFactura = request.getNombreFactura();
+									String nit = request.getNit();
+									String lugarPago = request.getLugarPago();
+									
+									if(nombreFactura.length()>40) {
+										nombreFactura = nombreFactura.substring(0, 40);
+									}
+									if(nit.length()>8) {
+										nit = nit.substring(0, 8);
+									}
+									if(lugarPago.length()>10) {
+										lugarPago = lugarPago.substring(0, 10);
+									}
+									
+									final Tuple pago = Tuple.of(fechaPagoF, codigoBusquedaF, Money.toDecimal(montoTotalF), nombreFactura, nit, lugarPago, ordenPagoF);
+									
+									Shard shardPago = shards.route(ordenPagoF);
+									Deadline.transaction(routingContext, shardPago.getBreaker(), shardPago.getClient(), connection -> this.savePayment(connection, pago, ordenPagoF, request.getDetallePago()), resPago -> {
+										if(resPago.failed()) {
+											this.getRoutingContextResponseByErrorCode(routingContext, response, "501", "pagos");
+										} else if(resPago.result()) {
+											this.getRoutingContextResponseByErrorCode(routingContext, response, "000", "");
+										} else {
+											this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "ESTA ORDEN YA SE ENCUENTRA PAGADA");
+										}
+									});
+								} else if(pagado){
+									this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "ESTA ORDEN YA SE ENCUENTRA PAGADA");
+								} else {
+									this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "EL MONTO TOTAL DIFIERE DEL VALOR A PAGAR");
+								}
+							});
+						} else {
+							this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "CÓDIGO DE DEPOSITANTE NO EXISTENTE");
+						}
+					} else {
+						this.getRoutingContextResponseByErrorCode(routingContext, response, "501", "clientes");
+					}
+				});
+		}
+	}
+	
+	/**
+	 * Revert payments according to an payment id. Deletes the payment in Roxxy database and update payment order state to false in Neivor database.
+	 * The reversion, the payment deletion and the payment order state update with the Neivor reversion are saved in one
+	 * Roxxy transaction, the outbox relay creates the Neivor reversion and sets its id in the Roxxy reversion afterwards
+	 * (see OutboxRelay), so the request does not wait for Neivor.
+	 * The process to be executed is as follows:
+	 * <ol>
+	 * 	<li>Body validation</li>
+	 * 	<li>CodigoBusqueda and FechaReversion format validation</li>
+	 * 	<li>Customer code validation with the customer code filter (see CustomerCodes)</li>
+	 * 	<li>Reversion id validation (unique) in Roxxy database</li>
+	 * 	<li>Payment id validation (if exists) in Roxxy database</li>
+	 * 	<li>Customer code searching in Roxxy database</li>
+	 * 	<li>Create reversion in Roxxy database, without Neivor reversion id</li>
+	 * 	<li>Delete payment and payment fees in Roxxy database</li>
+	 * 	<li>Save payment order state update to false with the Neivor reversion in Roxxy outbox</li>
+	 * </ol>
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	public void revertPaymentForCondominium(RoutingContext routingContext) {
+		//Recovering fields from body request
+		ReversionRequest request = requestReader.read(routingContext, ReversionRequest.class);
+		String codigoBusqueda = request!=null ? request.getCodigoBusqueda() : null;
+		Long idPago = request!=null ? request.getIdPago() : null;
+		Long idReversion = request!=null ? request.getIdReversion() : null;
+		String fechaReversion = request!=null ? request.getFechaReversion() : null;
+		
+		//Response to be sent int contextRouting.end()
+		ReversionResponse response = new ReversionResponse();
+		response.setCodigoBusqueda(codigoBusqueda);
+		response.setIdTxnRevertida(idReversion);
+		
+		//Body validation - CodigoBusqueda and FechaReversion format validation
+		if(codigoBusqueda==null || idPago==null || idReversion==null || fechaReversion==null) {
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "502", "");
+		} else if(codigoBusqueda.length()>14){
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "503", "CodigoBusqueda");
+		}  else if(fechaReversion.length()!=8){
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "503", "fechaReversion");
+		} else if(!customerCodes.mightExist(codigoBusqueda)) {
+			this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "CÓDIGO DE DEPOSITANTE NO EXISTENTE");
+		} else {
+			final Long idPagoF = idPago;
+			final Long idReversionF = idReversion;
+			final String codigoBusquedaF = codigoBusqueda;
+			final String fechaReversionF = fechaReversion;
+			Shard shard = shards.route(codigoBusqueda);
+			Shard shardPago = shards.routeNumber(idPago);
+			if(shardPago==null) {
+				this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "ID DE PAGO DESCONOCIDO");
+				return;
+			}
+			
+			//Reversion id validation (unique) in Roxxy database
+			Deadline.query(routingContext, shardPago.getBreaker(), shardPago.getClient(), RoxxyQueries.SELECT_REVERSION).collecting(Rows.single(RoxxyRows.ID_REVERSION))
+				.execute(Tuple.of(idReversionF), resReversion -> {
+					if(resReversion.succeeded()) {
+						if(resReversion.result()!=null && resReversion.result().size()>0) {
+							this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "EL ID DE LA REVERSION DEBE SER UNICO");
+						} else {
+							
+							//Payment id validation (if exists) in Roxxy database
+							Deadline.query(routingContext, shardPago.getBreaker(), shardPago.getClient(), RoxxyQueries.SELECT_PAGO).collecting(Rows.single(RoxxyRows.CONSTANCIA_PAGO))
+								.execute(Tuple.of(idPagoF), resPago -> {
+									if(resPago.succeeded()) {
+										if(resPago.result()!=null && resPago.result().size()>0) {
+											
+											//Customer code searching in Roxxy database
+											Deadline.query(routingContext, shard.getBreaker(), shard.getClient(), RoxxyQueries.SELECT_CLIENTE).collecting(Rows.single(RoxxyRows.CLIENTE))
+												.execute(Tuple.of(codigoBusquedaF), resCliente -> {
+													if(resCliente.succeeded()) {
+														if(resCliente.result()!=null && resCliente.result().size()>0) {
+															ConstanciaPago constanciaPago = resPago.result().value();
+															final long montoRevertidoF = constanciaPago.getMontoTotal();
+															final String ordenPagoF = constanciaPago.getOrdenPago();
+															
+															final Tuple reversion = Tuple.of(idReversionF, fechaReversionF, Money.toDecimal(montoRevertidoF), codigoBusquedaF);
+															final Tuple reversionNeivor = Tuple.of(ordenPagoF, idReversionF, fechaReversionF, Money.toDecimal(montoRevertidoF));
+															
+															Deadline.transaction(routingContext, shardPago.getBreaker(), shardPago.getClient(), connection -> this.saveReversion(connection, reversion, idPagoF, reversionNeivor), resReversionRoxxy -> {
+																if(resReversionRoxxy.succeeded()) {
+																	response.setIdTxnNeivorResponse(idReversionF);
+																	this.getRoutingContextResponseByErrorCode(routingContext, response, "000", "");
+																} else {
+																	this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "NO SE HA LOGRADO CREAR LA REVERSION EN ROXXY");
+																}
+															});
+														} else {
+															this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "CÓDIGO DE DEPOSITANTE NO EXISTENTE");
+														}
+													} else {
+														this.getRoutingContextResponseByErrorCode(routingContext, response, "501", "clientes");
+													}
+												});
+										} else {
+											this.getRoutingContextResponseByErrorCode(routingContext, response, "201", "ID DE PAGO DESCONOCIDO");
+										}
+									} else {
+										this.getRoutingContextResponseByErrorCode(routingContext, response, "501", "pagos");
+									}
+								});
+						}
+					} else {
+						this.getRoutingContextResponseByErrorCode(routingContext, response, "501", "reversiones");
+					}
+				});
+		}
+	}
+	
+	/**
+	 * Payment transaction: creates the payment constancy with its details and the payment order state update in the outbox
+	 * @param connection Connection of the transaction
+	 * @param pago Payment constancy columns
+	 * @param ordenPago Payment order code
+	 * @param detallePago Payment fees, may be null
+	 * @return true if the payment was saved, false if the payment order already has a payment constancy (unique index of
+	 * roxxy_pagos.orden_pago)
+	 */
+	private Future<Boolean> savePayment(SqlConnection connection, Tuple pago, String ordenPago, List<Pago> detallePago) {
+		
+		//Create payment constancy in Roxxy database, the payment order state in Neivor may be waiting for the relay
+		return connection.preparedQuery(RoxxyQueries.INSERT_PAGO).execute(pago).compose(resInsertPago -> {
+			long idTransaccion = resInsertPago.property(MySQLClient.LAST_INSERTED_ID);
+			
+			//Create payment constancy details for fees in Roxxy database (if applies)
+			List<Tuple> detalles = new ArrayList<>();
+			if(detallePago!=null) {
+				for(Pago detalle : detallePago) {
+					detalles.add(Tuple.of(idTransaccion, detalle.getNumeroCuota(), Money.toDecimal(detalle.getImporteCuota())));
+				}
+			}
+			Future<?> resDetalles = detalles.isEmpty()
+					? Future.succeededFuture()
+					: connection.preparedQuery(RoxxyQueries.INSERT_DETALLE_PAGO).executeBatch(detalles);
+			
+			//Save payment order state update to paid in Roxxy outbox
+			return resDetalles
+					.compose(res -> connection.preparedQuery(RoxxyQueries.INSERT_OUTBOX).execute(Tuple.of(ordenPago, true)))
+					.map(true);
+		}, cause -> cause instanceof MySQLException && ((MySQLException) cause).getErrorCode()==DUPLICATE_KEY
+				? Future.succeededFuture(false)
+				: Future.failedFuture(cause));
+	}
+	
+	/**
+	 * Reversion transaction: creates the reversion, deletes the payment constancy with its details and creates the payment
+	 * order state update with the Neivor reversion in the outbox
+	 * @param connection Connection of the transaction
+	 * @param reversion Reversion columns
+	 * @param idPago Transaction id of the payment constancy
+	 * @param reversionNeivor Outbox columns of the payment order state update and the Neivor reversion
+	 * @return Completed when all the statements succeeded
+	 */
+	private Future<Void> saveReversion(SqlConnection connection, Tuple reversion, Long idPago, Tuple reversionNeivor) {
+		return connection.preparedQuery(RoxxyQueries.INSERT_REVERSION).execute(reversion)
+				.compose(resInsertReversion -> connection.preparedQuery(RoxxyQueries.DELETE_DETALLES_PAGO).execute(Tuple.of(idPago)))
+				.compose(resDeleteDetallesPago -> connection.preparedQuery(RoxxyQueries.DELETE_PAGO).execute(Tuple.of(idPago)))
+				.compose(resDeletePago -> connection.preparedQuery(RoxxyQueries.INSERT_OUTBOX_REVERSION).execute(reversionNeivor))
+				.mapEmpty();
+	}
+	
+	/**
+	 * Report of the last or the running reconciliation with Neivor (see Reconciliation)
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	public void getReconciliationReport(RoutingContext routingContext) {
+		JsonObject report = reconciliation.getReport();
+		if(report!=null) {
+			this.getRoutingContextResponseByErrorCode(routingContext, report, "000", "");
+		} else {
+			this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject(), "201", "NO SE HA EJECUTADO NINGUNA CONCILIACION");
+		}
+	}
+	
+	/**
+	 * Answers requests whose body exceeds http.body.limit with 502, other failures go to the next failure handler
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	private void rejectRequestBody(RoutingContext routingContext) {
+		if(routingContext.statusCode()==413) {
+			this.getRoutingContextResponseByErrorCode(routingContext, new JsonObject(), "502", "");
+		} else {
+			routingContext.next();
+		}
+	}
+	
+	/**
+	 * Sends a request to the Neivor API over the event bus (see NeivorAddress) with the deadline of the route. If Neivor fails
+	 * the request, the response is ended with the error code and message replied by Neivor, with 504 when the deadline passes
+	 * or with 501 when Neivor can not be reached.
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 * @param response Load to be sent if the request fails
+	 * @param address Neivor event bus address
+	 * @param request Request body
+	 * @param handler Called with the Neivor reply when the request succeeds
+	 */
+	private void requestNeivor(RoutingContext routingContext, Object response, String address, JsonObject request, Handler<JsonObject> handler) {
+		routingContext.vertx().eventBus().<JsonObject>request(address, request, Deadline.deliveryOptions(routingContext), resNeivor -> {
+			if(Deadline.isExpired(routingContext)) {
+				this.getRoutingContextResponseByErrorCode(routingContext, response, "504", "");
+			} else if(resNeivor.succeeded()) {
+				handler.handle(resNeivor.result().body());
+			} else if(resNeivor.cause() instanceof ReplyException
+					&& ((ReplyException) resNeivor.cause()).failureType()==ReplyFailure.RECIPIENT_FAILURE) {
+				ReplyException replyException = (ReplyException) resNeivor.cause();
+				this.getRoutingContextResponseByErrorCode(routingContext, response, String.format("%03d", replyException.failureCode()), replyException.getMessage());
+			} else {
+				this.getRoutingContextResponseByErrorCode(routingContext, response, "501", "neivor");
+			}
+		});
+	}
+	
+	/**
+	 * Creates routing context response according to codError parameter. Puts the following headers:
+	 * <ul>
+	 * 	<li>content-type: application/json</li>
+	 * 	<li>codError: see error codes list below</li>
+	 * 	<li>descripcion: error description</li>
+	 * </ul>
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web. 
+	 * @param object Load to be encoded by Json for routing context
+	 * @param codError Custom error code for neivor. Can take the following values:
+	 * <ul>
+	 * 	<li><b>000</b>: PROCESO CONFORME (status code 200)</li>
+	 * 	<li><b>201</b>: message (status code 404)</li>
+	 * 	<li><b>401</b>: USUARIO Y CONTRASEÑA NO PROPORCIONADOS (status code 401)</li>
+	 * 	<li><b>402</b>: CONTRASEÑA NO PROPORCIONADA (status code 401)</li>
+	 * 	<li><b>403</b>: USUARIO NO PROPORCIONADO (status code 401)</li>
+	 * 	<li><b>404</b>: ENTIDAD NO PROPORCIONADA (status code 401)</li>
+	 * 	<li><b>405</b>: CREDENCIALES INVALIDAS (status code 401)</li>
+	 * 	<li><b>406</b>: LIMITE DE SOLICITUDES EXCEDIDO, the entity exceeded its rate limit (status code 429)</li>
+	 * 	<li><b>501</b>: PROBLEMAS CON LA CONEXION + message (status code 404)</li>
+	 * 	<li><b>502</b>: CARGA UTIL NO VALIDA (status code 400)</li>
+	 * 	<li><b>503</b>: FORMATO NO VALIDO PARA + message (status code 400)</li>
+	 * 	<li><b>504</b>: TIEMPO DE ESPERA AGOTADO, the deadline of the route passed (status code 504)</li>
+	 * </ul>
+	 * @param message Custom extra message for descripcion header
+	 */
+	public void getRoutingContextResponseByErrorCode(RoutingContext routingContext, Object object, String codError, String message) {
+		switch(codError) {
+			case "000":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(200)
+					.putHeader("content-type", "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "PROCESO CONFORME"), object);
+				break;
+			case "201":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(404)
+					.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", message), object);
+				break;
+			case "401":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(401)
+					.putHeader("content-type", "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "USUARIO Y CONTRASEÑA NO PROPORCIONADOS"), object);
+				break;
+			case "402":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(401)
+					.putHeader("content-type", "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "CONTRASEÑA NO PROPORCIONADA"), object);
+				break;
+			case "403":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(401)
+					.putHeader("content-type", "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "USUARIO NO PROPORCIONADO"), object);
+				break;
+			case "404":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(401)
+					.putHeader("content-type", "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "ENTIDAD NO PROPORCIONADA"), object);
+				break;
+			case "405":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(401)
+					.putHeader("content-type", "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "CREDENCIALES INVALIDAS"), object);
+				break;
+			case "406":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(429)
+					.putHeader("content-type", "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "LIMITE DE SOLICITUDES EXCEDIDO"), object);
+				break;
+			case "501":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(404)
+					.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "PROBLEMAS CON LA CONEXION: "+message), object);
+				break;
+			case "502":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(400)
+					.putHeader("content-type", "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "CARGA UTIL NO VALIDA"), object);
+				break;
+			case "503":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(400)
+					.putHeader("content-type", "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "FORMATO NO VALIDO PARA "+message), object);
+				break;
+			case "504":
+				this.responseWriter.end(routingContext.response()
+					.setStatusCode(504)
+					.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+					.putHeader("codError", codError)
+					.putHeader("descripcion", "TIEMPO DE ESPERA AGOTADO"), object);
+				break;
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package com.juant.roxxy.query;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SQL statements used with the Roxxy database. All of them are prepared on every pooled connection
+ * during the verticle warm up (see ApiVerticle.warmUpPool). The schema changes they need are in
+ * src/main/resources/db/migration (roxxy_*.sql), run in file order on every shard.
+ * @author Juan Tzun
+ *
+ */
+public final class RoxxyQueries {
+
+	/**
+	 * Customer name by customer code
+	 */
+	public static final String SELECT_CLIENTE = "SELECT nombre FROM roxxy_clientes WHERE codigo = ?";
+
+	/**
+	 * Payment constancy creation, a payment order has one payment constancy (unique index on orden_pago)
+	 */
+	public static final String INSERT_PAGO = "INSERT INTO roxxy_pagos (fecha_pago, codigo_cliente, monto_total, nombre_factura, nit, lugar_pago, orden_pago) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+	/**
+	 * Payment constancy detail (fee) creation
+	 */
+	public static final String INSERT_DETALLE_PAGO = "INSERT INTO roxxy_detalles_pagos (id_transaccion, numero_cuota, importe_cuota) VALUES (?, ?, ?)";
+
+	/**
+	 * Reversion by reversion id
+	 */
+	public static final String SELECT_REVERSION = "SELECT id_reversion FROM roxxy_reversiones WHERE id_reversion = ?";
+
+	/**
+	 * Payment constancy by transaction id
+	 */
+	public static final String SELECT_PAGO = "SELECT id_transaccion, monto_total, orden_pago FROM roxxy_pagos WHERE id_transaccion = ?";
+
+	/**
+	 * Reversion creation, the Neivor reversion id is set by the outbox relay (see UPDATE_REVERSION_NEIVOR)
+	 */
+	public static final String INSERT_REVERSION = "INSERT INTO roxxy_reversiones (id_reversion, fecha_reversion, monto_revertido, codigo_cliente) VALUES (?, ?, ?, ?)";
+
+	/**
+	 * Payment constancy details deletion
+	 */
+	public static final String DELETE_DETALLES_PAGO = "DELETE FROM roxxy_detalles_pagos WHERE id_transaccion = ?";
+
+	/**
+	 * Payment constancy deletion
+	 */
+	public static final String DELETE_PAGO = "DELETE FROM roxxy_pagos WHERE id_transaccion = ?";
+
+	/**
+	 * Payment order state update waiting to be applied in Neivor (see OutboxRelay)
+	 */
+	public static final String INSERT_OUTBOX = "INSERT INTO roxxy_outbox (orden_pago, pagado) VALUES (?, ?)";
+
+	/**
+	 * Payment order state update to unpaid with the Neivor reversion to be created, waiting to be applied in Neivor
+	 */
+	public static final String INSERT_OUTBOX_REVERSION = "INSERT INTO roxxy_outbox (orden_pago, pagado, id_reversion, fecha_reversion, monto_revertido) VALUES (?, 0, ?, ?, ?)";
+
+	/**
+	 * Oldest payment order state updates waiting to be applied in Neivor, with the reversion columns of reversions
+	 */
+	public static final String SELECT_OUTBOX = "SELECT id, orden_pago, pagado, id_reversion, fecha_reversion, monto_revertido FROM roxxy_outbox ORDER BY id LIMIT ?";
+
+	/**
+	 * Payment order state update applied in Neivor
+	 */
+	public static final String DELETE_OUTBOX = "DELETE FROM roxxy_outbox WHERE id = ?";
+
+	/**
+	 * Neivor reversion id of a reversion, set once the outbox relay created the Neivor reversion
+	 */
+	public static final String UPDATE_REVERSION_NEIVOR = "UPDATE roxxy_reversiones SET id_txn_neivor_reversion = ? WHERE id_reversion = ?";
+
+	/**
+	 * Failed attempt to apply a payment order state update in Neivor
+	 */
+	public static final String UPDATE_OUTBOX_INTENTOS = "UPDATE roxxy_outbox SET intentos = intentos + 1 WHERE id = ?";
+
+	/**
+	 * Payment constancies from a payment order code, in payment order code order
+	 */
+	public static final String SELECT_PAGOS_CONCILIACION = "SELECT orden_pago, monto_total FROM roxxy_pagos WHERE orden_pago >= ? ORDER BY orden_pago LIMIT ?";
+
+	/**
+	 * Payment orders with state updates waiting in the outbox from a payment order code
+	 */
+	public static final String SELECT_OUTBOX_ORDENES = "SELECT orden_pago FROM roxxy_outbox WHERE orden_pago >= ?";
+
+	/**
+	 * Payment order code if it has a payment constancy or updates waiting in the outbox, checked by Neivor before archiving
+	 * the payment order (see RoxxyService)
+	 */
+	public static final String SELECT_ORDEN_PAGO_COBRADA = "SELECT orden_pago FROM roxxy_pagos WHERE orden_pago = ? UNION SELECT orden_pago FROM roxxy_outbox WHERE orden_pago = ?";
+
+	/**
+	 * Payment order state update of a payment order unknown in Neivor, copied from the outbox to the rejected updates
+	 */
+	public static final String INSERT_OUTBOX_RECHAZO = "INSERT INTO roxxy_outbox_rechazos (id, orden_pago, pagado, id_reversion, fecha_reversion, monto_revertido, intentos) SELECT id, orden_pago, pagado, id_reversion, fecha_reversion, monto_revertido, intentos FROM roxxy_outbox WHERE id = ?";
+
+	/**
+	 * Reversions from a Neivor reversion id, in Neivor reversion id order. Reversions waiting for the outbox relay do not
+	 * have a Neivor reversion id yet and are not read
+	 */
+	public static final String SELECT_REVERSIONES_CONCILIACION = "SELECT id_txn_neivor_reversion, id_reversion, fecha_reversion, monto_revertido FROM roxxy_reversiones WHERE id_txn_neivor_reversion >= ? ORDER BY id_txn_neivor_reversion LIMIT ?";
+
+	/**
+	 * Number of customers, used to size the customer code filter (see CustomerCodes)
+	 */
+	public static final String SELECT_CLIENTES_TOTAL = "SELECT COUNT(*) FROM roxxy_clientes";
+
+	/**
+	 * Customer codes after a customer code, in customer code order
+	 */
+	public static final String SELECT_CLIENTES_CODIGOS = "SELECT codigo FROM roxxy_clientes WHERE codigo > ? ORDER BY codigo LIMIT ?";
+
+	/**
+	 * All the statements, in the order they are used
+	 */
+	public static final List<String> ALL = Arrays.asList(
+			SELECT_CLIENTE,
+			INSERT_PAGO,
+			INSERT_DETALLE_PAGO,
+			SELECT_REVERSION,
+			SELECT_PAGO,
+			INSERT_REVERSION,
+			DELETE_DETALLES_PAGO,
+			DELETE_PAGO,
+			INSERT_OUTBOX,
+			INSERT_OUTBOX_REVERSION,
+			SELECT_OUTBOX,
+			DELETE_OUTBOX,
+			UPDATE_REVERSION_NEIVOR,
+			UPDATE_OUTBOX_INTENTOS,
+			SELECT_PAGOS_CONCILIACION,
+			SELECT_OUTBOX_ORDENES,
+			SELECT_ORDEN_PAGO_COBRADA,
+			INSERT_OUTBOX_RECHAZO,
+			SELECT_REVERSIONES_CONCILIACION,
+			SELECT_CLIENTES_TOTAL,
+			SELECT_CLIENTES_CODIGOS);
+
+	private RoxxyQueries() {
+	}
+}
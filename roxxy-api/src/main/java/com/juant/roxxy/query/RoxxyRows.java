@@ -0,0 +1,67 @@
+package com.juant.roxxy.query;
+
+import java.util.function.Function;
+
+import com.juant.roxxy.entity.ConstanciaPago;
+import com.juant.roxxy.entity.Money;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+
+/**
+ * Row mappers of the RoxxyQueries statements, used with Rows collectors. Amounts are mapped to long cents (see Money).
+ * @author Juan Tzun
+ *
+ */
+public final class RoxxyRows {
+
+	/**
+	 * Customer name of SELECT_CLIENTE
+	 */
+	public static final Function<Row, String> CLIENTE = row -> row.getString(0);
+
+	/**
+	 * Number of customers of SELECT_CLIENTES_TOTAL
+	 */
+	public static final Function<Row, Long> TOTAL = row -> row.getLong(0);
+
+	/**
+	 * Customer code of SELECT_CLIENTES_CODIGOS
+	 */
+	public static final Function<Row, String> CODIGO_CLIENTE = row -> row.getString(0);
+
+	/**
+	 * Reversion id of SELECT_REVERSION
+	 */
+	public static final Function<Row, Long> ID_REVERSION = row -> row.getLong(0);
+
+	/**
+	 * Payment constancy of SELECT_PAGO
+	 */
+	public static final Function<Row, ConstanciaPago> CONSTANCIA_PAGO = row -> new ConstanciaPago(row.getLong(0),
+			Money.fromDecimal(row.getBigDecimal(1)), row.getString(2));
+
+	/**
+	 * Payment order code of SELECT_OUTBOX_ORDENES and SELECT_ORDEN_PAGO_COBRADA
+	 */
+	public static final Function<Row, String> ORDEN_PAGO = row -> row.getString(0);
+
+	/**
+	 * Payment constancy of SELECT_PAGOS_CONCILIACION as {ordenPago, montoTotal}
+	 */
+	public static final Function<Row, JsonObject> PAGO_CONCILIACION = row -> new JsonObject()
+			.put("ordenPago", row.getString(0))
+			.put("montoTotal", Money.fromDecimal(row.getBigDecimal(1)));
+
+	/**
+	 * Reversion of SELECT_REVERSIONES_CONCILIACION as {idReversionNeivor, idReversion, fechaReversion, montoRevertido}
+	 */
+	public static final Function<Row, JsonObject> REVERSION_CONCILIACION = row -> new JsonObject()
+			.put("idReversionNeivor", row.getLong(0))
+			.put("idReversion", row.getLong(1))
+			.put("fechaReversion", String.valueOf(row.getValue(2)))
+			.put("montoRevertido", Money.fromDecimal(row.getBigDecimal(3)));
+
+	private RoxxyRows() {
+	}
+}
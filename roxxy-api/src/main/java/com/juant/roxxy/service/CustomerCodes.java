@@ -0,0 +1,195 @@
+package com.juant.roxxy.service;
+
+import java.util.Locale;
+
+import com.juant.roxxy.core.BloomFilter;
+import com.juant.roxxy.core.Rows;
+import com.juant.roxxy.core.Shard;
+import com.juant.roxxy.core.ShardRouter;
+import com.juant.roxxy.query.RoxxyQueries;
+import com.juant.roxxy.query.RoxxyRows;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Lock;
+import io.vertx.sqlclient.SqlResult;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Bloom filter of the customer codes of all the shards (see BloomFilter), so requests with unknown customer codes are
+ * answered without a query. The filter is built on start by reading the codes of every shard in code order by chunks,
+ * every chunk is added to the filter as its rows are decoded, and it is built again every roxxy.customer.filter.interval
+ * milliseconds; the new filter replaces the old one once it is complete. Until the first filter is built, or if it could
+ * not be built, every code may exist. Only one instance of the verticle builds the filter at a time, the filter is shared
+ * by all of them. Customers are not created by the API, a customer inserted in the database is known once the filter is
+ * built again. Codes are added and checked trimmed and in upper case, because the collation of the column ignores case
+ * and trailing spaces and the query finds the customer with any of them. The following keys are available:
+ * <ul>
+ * 	<li><b>roxxy.customer.filter.enabled</b>: rejects unknown customer codes with the filter (default true)</li>
+ * 	<li><b>roxxy.customer.filter.false.positives</b>: unknown codes that pass the filter with the expected customers (default 0.01)</li>
+ * 	<li><b>roxxy.customer.filter.growth</b>: customers the filter is sized for, as a multiple of the current customers (default 2)</li>
+ * 	<li><b>roxxy.customer.filter.chunk.size</b>: codes read in a query (default 10000)</li>
+ * 	<li><b>roxxy.customer.filter.interval</b>: milliseconds between builds (default 300000)</li>
+ * </ul>
+ * @author Juan Tzun
+ *
+ */
+public class CustomerCodes {
+
+	private static final String LOCK = "roxxy.customer.filter";
+	private static final String FILTER = "roxxy.customer.filter";
+
+	private final ShardRouter shards;
+	private Vertx vertx;
+
+	private boolean enabled;
+	private double falsePositives;
+	private double growth;
+	private int chunkSize;
+	private long interval;
+
+	/**
+	 * Constructor with parameters.
+	 * @param shards Shards of Roxxy database
+	 * @param config Application config
+	 */
+	public CustomerCodes(ShardRouter shards, JsonObject config) {
+		this.shards = shards;
+		this.configure(config);
+	}
+
+	/**
+	 * Reads the roxxy.customer.filter.* settings, the filter is sized with them from the next build
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		this.enabled = config.getBoolean("roxxy.customer.filter.enabled", true);
+		this.falsePositives = config.getDouble("roxxy.customer.filter.false.positives", 0.01);
+		this.growth = Math.max(config.getDouble("roxxy.customer.filter.growth", 2.0), 1.0);
+		this.chunkSize = Math.max(config.getInteger("roxxy.customer.filter.chunk.size", 10000), 1);
+		this.interval = Math.max(config.getLong("roxxy.customer.filter.interval", 300000L), 1L);
+	}
+
+	/**
+	 * Builds the filter if no other instance built it, then schedules the next builds
+	 * @param vertx The entry point into the Vert.x Core API.
+	 */
+	public void register(Vertx vertx) {
+		this.vertx = vertx;
+		this.build();
+	}
+
+	/**
+	 * @param codigo Customer code
+	 * @return false if the customer surely does not exist, true if it may exist
+	 */
+	public boolean mightExist(String codigo) {
+		if(!enabled) {
+			return true;
+		}
+		BloomFilter filter = this.getFilters().get(FILTER);
+		return filter==null || filter.mightContain(normalize(codigo));
+	}
+
+	/**
+	 * @param codigo Customer code
+	 * @return Code as compared by the collation of the database
+	 */
+	private static String normalize(String codigo) {
+		return codigo.trim().toUpperCase(Locale.ROOT);
+	}
+
+	/**
+	 * @param delay Milliseconds until the next build
+	 */
+	private void schedule(long delay) {
+		vertx.setTimer(delay, timer -> this.build());
+	}
+
+	/**
+	 * Builds the filter if it is enabled, no other instance is building it and the current one is older than the
+	 * interval, then schedules the next build
+	 */
+	private void build() {
+		if(!enabled) {
+			this.schedule(interval);
+			return;
+		}
+		//Built by another instance since the last build of this one
+		BloomFilter current = this.getFilters().get(FILTER);
+		long age = current!=null ? System.currentTimeMillis()-current.getCreated() : interval;
+		if(age<interval) {
+			this.schedule(interval-age);
+			return;
+		}
+		vertx.sharedData().getLocalLockWithTimeout(LOCK, 10L, resLock -> {
+			if(resLock.failed()) {
+				this.schedule(interval);
+				return;
+			}
+			Lock lock = resLock.result();
+			long start = System.currentTimeMillis();
+			shards.all(shard -> this.count(shard))
+				.compose(totals -> {
+					long total = 0L;
+					for(Long shardTotal : totals) {
+						total += shardTotal;
+					}
+					BloomFilter filter = new BloomFilter((long) Math.ceil(total*growth), falsePositives);
+					return shards.all(shard -> this.addCodes(shard, filter, "")).map(filter);
+				})
+				.onComplete(resFilter -> {
+					lock.release();
+					if(resFilter.succeeded()) {
+						this.getFilters().put(FILTER, resFilter.result());
+						System.out.println("Customer code filter built with "+resFilter.result().getBits()+" bits in "+(System.currentTimeMillis()-start)+" ms");
+					} else {
+						System.out.println("Customer code filter failed: "+resFilter.cause().getMessage());
+					}
+					this.schedule(interval);
+				});
+		});
+	}
+
+	/**
+	 * @param shard Shard of Roxxy database
+	 * @return Customers of the shard
+	 */
+	private Future<Long> count(Shard shard) {
+		Promise<Long> promise = Promise.promise();
+		shard.execute(client -> client.preparedQuery(RoxxyQueries.SELECT_CLIENTES_TOTAL).collecting(Rows.single(RoxxyRows.TOTAL))
+				.execute().map(SqlResult::value), promise);
+		return promise.future().map(total -> total!=null ? total : 0L);
+	}
+
+	/**
+	 * Adds the codes of a shard after a code to the filter, chunk by chunk
+	 * @param shard Shard of Roxxy database
+	 * @param filter Filter being built
+	 * @param desde Last code added
+	 * @return Completed when all the codes of the shard are added
+	 */
+	private Future<Void> addCodes(Shard shard, BloomFilter filter, String desde) {
+		Promise<SqlResult<String>> promise = Promise.promise();
+		shard.execute(client -> client.preparedQuery(RoxxyQueries.SELECT_CLIENTES_CODIGOS)
+				.collecting(Rows.single(row -> {
+					String codigo = RoxxyRows.CODIGO_CLIENTE.apply(row);
+					filter.add(normalize(codigo));
+					return codigo;
+				}))
+				.execute(Tuple.of(desde, chunkSize)), promise);
+		return promise.future().compose(resChunk -> resChunk.size()<chunkSize
+				? Future.succeededFuture()
+				: this.addCodes(shard, filter, resChunk.value()));
+	}
+
+	/**
+	 * @return Filter shared by all the instances
+	 */
+	private LocalMap<String, BloomFilter> getFilters() {
+		return vertx.sharedData().getLocalMap(FILTER);
+	}
+}
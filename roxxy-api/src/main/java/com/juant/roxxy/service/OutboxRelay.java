@@ -0,0 +1,196 @@
+package com.juant.roxxy.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.juant.roxxy.core.NeivorAddress;
+import com.juant.roxxy.core.Shard;
+import com.juant.roxxy.entity.Money;
+import com.juant.roxxy.query.RoxxyQueries;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Lock;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Applies in Neivor the payment order state updates saved in the roxxy_outbox table. Payments and reversions save the
+ * update in the same Roxxy transaction as the payment, so the update is not lost if Neivor is down or the process stops,
+ * and the request does not wait for Neivor. The oldest updates are sent in batches to NeivorAddress.ORDEN_PAGO_ESTADO and
+ * deleted once Neivor replies. Reversions save the Neivor reversion with the update, Neivor creates it once by Roxxy
+ * reversion id and its id is set in the Roxxy reversion when the update is deleted. A failed batch is sent again, in the
+ * same order, after a backoff that doubles on every failure; updates set the state and reversions are not created twice,
+ * so sending them twice is harmless. Updates of payment orders that Neivor does not know, for example archived by its
+ * expiry job before the update arrived, are moved to roxxy_outbox_rechazos (same columns as roxxy_outbox) instead of
+ * being dropped, and the reconciliation reports their payments. Every shard has its own outbox and relay, only one
+ * instance of the verticle relays the outbox of a shard at a time.
+ * The following keys are available:
+ * <ul>
+ * 	<li><b>roxxy.outbox.interval</b>: milliseconds between relays when the outbox is empty (default 1000)</li>
+ * 	<li><b>roxxy.outbox.batch.size</b>: updates sent to Neivor at once (default 100)</li>
+ * 	<li><b>roxxy.outbox.max.backoff</b>: maximum milliseconds between relays after failures (default 60000)</li>
+ * 	<li><b>roxxy.outbox.timeout</b>: milliseconds to wait for Neivor (default 10000)</li>
+ * </ul>
+ * @author Juan Tzun
+ *
+ */
+public class OutboxRelay {
+
+	private static final String LOCK = "roxxy.outbox.relay";
+
+	private final Shard shard;
+	private Vertx vertx;
+
+	private long interval;
+	private int batchSize;
+	private long maxBackoff;
+	private long timeout;
+
+	//Consecutive failed relays
+	private int failures;
+
+	/**
+	 * Constructor with parameters.
+	 * @param shard Shard of Roxxy database
+	 * @param config Application config
+	 */
+	public OutboxRelay(Shard shard, JsonObject config) {
+		this.shard = shard;
+		this.configure(config);
+	}
+
+	/**
+	 * Reads the roxxy.outbox.* settings, used from the next relay
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		this.interval = Math.max(config.getLong("roxxy.outbox.interval", 1000L), 1L);
+		this.batchSize = Math.max(config.getInteger("roxxy.outbox.batch.size", 100), 1);
+		this.maxBackoff = Math.max(config.getLong("roxxy.outbox.max.backoff", 60000L), interval);
+		this.timeout = config.getLong("roxxy.outbox.timeout", 10000L);
+	}
+
+	/**
+	 * Starts relaying
+	 * @param vertx The entry point into the Vert.x Core API.
+	 */
+	public void register(Vertx vertx) {
+		this.vertx = vertx;
+		this.schedule(interval);
+	}
+
+	/**
+	 * @param delay Milliseconds until the next relay
+	 */
+	private void schedule(long delay) {
+		vertx.setTimer(delay, timer -> this.relay());
+	}
+
+	/**
+	 * Relays a batch if no other instance is relaying, then schedules the next relay: at once if the batch was full,
+	 * after the interval if the outbox is drained, or after the backoff if it failed
+	 */
+	private void relay() {
+		vertx.sharedData().getLocalLockWithTimeout(LOCK+"."+shard.getName(), 10L, resLock -> {
+			if(resLock.failed()) {
+				this.schedule(interval);
+				return;
+			}
+			Lock lock = resLock.result();
+			this.relayBatch(resBatch -> {
+				lock.release();
+				if(resBatch.succeeded()) {
+					failures = 0;
+					this.schedule(resBatch.result() ? 1L : interval);
+				} else {
+					failures++;
+					long backoff = Math.min(interval<<Math.min(failures, 16), maxBackoff);
+					System.out.println("Outbox relay failed in "+shard.getName()+", retrying in "+backoff+" ms: "+resBatch.cause().getMessage());
+					this.schedule(backoff);
+				}
+			});
+		});
+	}
+
+	/**
+	 * Sends the oldest updates to Neivor and deletes them once applied, or counts the failed attempt. The Neivor reversion
+	 * ids replied are set in the Roxxy reversions in the same transaction that deletes the updates.
+	 * @param handler Called with true if the batch was full and more updates may be waiting
+	 */
+	private void relayBatch(Handler<AsyncResult<Boolean>> handler) {
+		shard.execute(client -> client.preparedQuery(RoxxyQueries.SELECT_OUTBOX).execute(Tuple.of(batchSize)), resOutbox -> {
+			if(resOutbox.failed()) {
+				handler.handle(Future.failedFuture(resOutbox.cause()));
+				return;
+			}
+			JsonArray ordenes = new JsonArray();
+			List<Tuple> ids = new ArrayList<>();
+			List<String> codigos = new ArrayList<>();
+			for(Row row : resOutbox.result()) {
+				ids.add(Tuple.of(row.getLong(0)));
+				codigos.add(row.getString(1));
+				JsonObject orden = new JsonObject()
+						.put("codigo", row.getString(1))
+						.put("pagado", row.getBoolean(2));
+				if(row.getLong(3)!=null) {
+					orden.put("reversion", new JsonObject()
+							.put("idReversion", row.getLong(3))
+							.put("fechaReversion", String.valueOf(row.getValue(4)))
+							.put("montoRevertido", Money.fromDecimal(row.getBigDecimal(5))));
+				}
+				ordenes.add(orden);
+			}
+			if(ids.isEmpty()) {
+				handler.handle(Future.succeededFuture(false));
+				return;
+			}
+
+			//Update payment orders state and create reversions in Neivor
+			DeliveryOptions options = new DeliveryOptions().setSendTimeout(timeout);
+			vertx.eventBus().<JsonObject>request(NeivorAddress.ORDEN_PAGO_ESTADO, new JsonObject().put("ordenes", ordenes), options, resNeivor -> {
+				if(resNeivor.failed()) {
+					shard.execute(client -> client.preparedQuery(RoxxyQueries.UPDATE_OUTBOX_INTENTOS).executeBatch(ids), resIntentos ->
+						handler.handle(Future.failedFuture(resNeivor.cause())));
+					return;
+				}
+				List<Tuple> reversiones = new ArrayList<>();
+				JsonArray reversionesNeivor = resNeivor.result().body().getJsonArray("reversiones", new JsonArray());
+				for(int i = 0; i<reversionesNeivor.size(); i++) {
+					JsonObject reversion = reversionesNeivor.getJsonObject(i);
+					reversiones.add(Tuple.of(reversion.getLong("idReversionNeivor"), reversion.getLong("idReversion")));
+				}
+
+				//Updates of unknown payment orders are kept in the rejected updates
+				List<Tuple> rechazos = new ArrayList<>();
+				JsonArray desconocidas = resNeivor.result().body().getJsonArray("desconocidas", new JsonArray());
+				for(int i = 0; i<ids.size(); i++) {
+					if(desconocidas.contains(codigos.get(i))) {
+						rechazos.add(ids.get(i));
+					}
+				}
+				shard.execute(client -> client.withTransaction(connection -> (reversiones.isEmpty()
+							? Future.succeededFuture()
+							: connection.preparedQuery(RoxxyQueries.UPDATE_REVERSION_NEIVOR).executeBatch(reversiones))
+						.compose(res -> rechazos.isEmpty()
+							? Future.succeededFuture()
+							: connection.preparedQuery(RoxxyQueries.INSERT_OUTBOX_RECHAZO).executeBatch(rechazos))
+						.compose(res -> connection.preparedQuery(RoxxyQueries.DELETE_OUTBOX).executeBatch(ids))), resOutboxUpdate -> {
+					if(resOutboxUpdate.failed()) {
+						handler.handle(Future.failedFuture(resOutboxUpdate.cause()));
+					} else {
+						if(!rechazos.isEmpty()) {
+							System.out.println("Moved "+rechazos.size()+" updates of payment orders unknown in Neivor to roxxy_outbox_rechazos in "+shard.getName());
+						}
+						handler.handle(Future.succeededFuture(ids.size()==batchSize));
+					}
+				});
+			});
+		});
+	}
+}
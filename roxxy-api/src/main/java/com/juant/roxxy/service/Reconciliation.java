@@ -0,0 +1,581 @@
+package com.juant.roxxy.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+import com.juant.roxxy.core.NeivorAddress;
+import com.juant.roxxy.core.Rows;
+import com.juant.roxxy.core.Shard;
+import com.juant.roxxy.core.ShardRouter;
+import com.juant.roxxy.query.RoxxyQueries;
+import com.juant.roxxy.query.RoxxyRows;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Lock;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.SqlResult;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Nightly reconciliation between the Roxxy payments and reversions and the Neivor payment orders and reversions.
+ * Both sides are read in key order by chunks (Neivor over the event bus, see NeivorAddress.ORDENES_PAGO_PAGADAS and
+ * NeivorAddress.REVERSIONES), every chunk is compared with a merge join on the worker pool while the next one is read,
+ * and the discrepancies are kept in a report (see getReport). The following discrepancies are reported:
+ * <ul>
+ * 	<li><b>ORDEN_NO_PAGADA</b>: Roxxy payment whose Neivor payment order does not exist or is not paid</li>
+ * 	<li><b>PAGO_INEXISTENTE</b>: paid Neivor payment order without Roxxy payment</li>
+ * 	<li><b>MONTO_DIFERENTE</b>: Roxxy payment amount different from the Neivor payment order amount</li>
+ * 	<li><b>PAGO_DUPLICADO</b>: more than one Roxxy payment for a payment order</li>
+ * 	<li><b>REVERSION_SIN_NEIVOR</b>: Roxxy reversion whose Neivor reversion does not exist</li>
+ * 	<li><b>REVERSION_SIN_ROXXY</b>: Neivor reversion without Roxxy reversion</li>
+ * 	<li><b>MONTO_REVERTIDO_DIFERENTE</b> and <b>FECHA_REVERSION_DIFERENTE</b>: reversions that do not agree</li>
+ * 	<li><b>REVERSION_DUPLICADA</b>: more than one Roxxy reversion for a Neivor reversion</li>
+ * </ul>
+ * Roxxy pages are read from every shard and merged in key order (see ShardRouter.merge), like the Neivor ones.
+ * Payment orders with updates waiting in the outbox (see OutboxRelay) are skipped. Only one instance of the verticle
+ * reconciles at a time, the report is shared by all of them. The following keys are available:
+ * <ul>
+ * 	<li><b>roxxy.reconciliation.enabled</b>: runs the reconciliation (default true)</li>
+ * 	<li><b>roxxy.reconciliation.hour</b>: hour of the day when it runs (default 2)</li>
+ * 	<li><b>roxxy.reconciliation.chunk.size</b>: rows read from every side in a chunk (default 1000)</li>
+ * 	<li><b>roxxy.reconciliation.parallelism</b>: chunks compared at the same time (default 4)</li>
+ * 	<li><b>roxxy.reconciliation.report.max</b>: discrepancies with detail in the report, the rest are only counted (default 1000)</li>
+ * 	<li><b>roxxy.reconciliation.timeout</b>: milliseconds to wait for a Neivor chunk (default 30000)</li>
+ * </ul>
+ * @author Juan Tzun
+ *
+ */
+public class Reconciliation {
+
+	private static final String LOCK = "roxxy.reconciliation";
+	private static final String REPORT = "roxxy.reconciliation";
+
+	private final ShardRouter shards;
+	private Vertx vertx;
+
+	private boolean enabled;
+	private int hour;
+	private int chunkSize;
+	private int parallelism;
+	private int reportMax;
+	private long timeout;
+
+	/**
+	 * Constructor with parameters.
+	 * @param shards Shards of Roxxy database
+	 * @param config Application config
+	 */
+	public Reconciliation(ShardRouter shards, JsonObject config) {
+		this.shards = shards;
+		this.configure(config);
+	}
+
+	/**
+	 * Reads the roxxy.reconciliation.* settings, used from the next reconciliation
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		this.enabled = config.getBoolean("roxxy.reconciliation.enabled", true);
+		this.hour = Math.floorMod(config.getInteger("roxxy.reconciliation.hour", 2), 24);
+		this.chunkSize = Math.max(config.getInteger("roxxy.reconciliation.chunk.size", 1000), 1);
+		this.parallelism = Math.max(config.getInteger("roxxy.reconciliation.parallelism", 4), 1);
+		this.reportMax = Math.max(config.getInteger("roxxy.reconciliation.report.max", 1000), 0);
+		this.timeout = config.getLong("roxxy.reconciliation.timeout", 30000L);
+	}
+
+	/**
+	 * Schedules the reconciliation
+	 * @param vertx The entry point into the Vert.x Core API.
+	 */
+	public void register(Vertx vertx) {
+		this.vertx = vertx;
+		this.schedule();
+	}
+
+	/**
+	 * @return Report of the last or the running reconciliation, null if none was run since start:
+	 * {estado, inicio, fin, filas: {pagos, reversiones}, discrepancias: {tipo: total}, detalle: [{tipo, clave, roxxy, neivor}]}
+	 */
+	public JsonObject getReport() {
+		return vertx.sharedData().<String, JsonObject>getLocalMap(REPORT).get("report");
+	}
+
+	/**
+	 * Schedules the next reconciliation at the configured hour
+	 */
+	private void schedule() {
+		LocalDateTime now = LocalDateTime.now();
+		LocalDateTime next = now.toLocalDate().atTime(hour, 0);
+		if(!next.isAfter(now)) {
+			next = next.plusDays(1);
+		}
+		vertx.setTimer(Math.max(Duration.between(now, next).toMillis(), 1L), timer -> this.reconcile());
+	}
+
+	/**
+	 * Reconciles payments and then reversions if no other instance is reconciling
+	 */
+	private void reconcile() {
+		if(!enabled) {
+			this.schedule();
+			return;
+		}
+		vertx.sharedData().getLocalLockWithTimeout(LOCK, 10L, resLock -> {
+			if(resLock.failed()) {
+				this.schedule();
+				return;
+			}
+			Lock lock = resLock.result();
+			Report report = new Report();
+			this.publish(report.toJson("EN CURSO"));
+
+			new PagosPass(report).start("")
+				.compose(v -> new ReversionesPass(report).start(Long.MIN_VALUE))
+				.onComplete(resReconciliation -> {
+					lock.release();
+					JsonObject json = report.toJson(resReconciliation.succeeded() ? "COMPLETADA" : "FALLIDA");
+					if(resReconciliation.failed()) {
+						json.put("error", resReconciliation.cause().getMessage());
+					}
+					this.publish(json);
+					System.out.println("Reconciliation "+json.getString("estado")+" with "+report.total()+" discrepancies");
+					this.schedule();
+				});
+		});
+	}
+
+	/**
+	 * @param report Report shared by all the instances
+	 */
+	private void publish(JsonObject report) {
+		vertx.sharedData().<String, JsonObject>getLocalMap(REPORT).put("report", report);
+	}
+
+	/**
+	 * @param shard Shard to be read
+	 * @param sql SQL statement
+	 * @param params Statement parameters
+	 * @param collector Collects the rows
+	 * @return Collected rows
+	 */
+	private <T> Future<T> query(Shard shard, String sql, Tuple params, Collector<Row, ?, T> collector) {
+		Promise<T> promise = Promise.promise();
+		shard.execute(client -> client.preparedQuery(sql).collecting(collector).execute(params).map(SqlResult::value), promise);
+		return promise.future();
+	}
+
+	/**
+	 * @param address Neivor event bus address
+	 * @param desde First key
+	 * @param limite Rows to read
+	 * @param field Reply field with the rows
+	 * @return Neivor rows in key order
+	 */
+	private Future<List<JsonObject>> requestNeivor(String address, Object desde, int limite, String field) {
+		Promise<Message<JsonObject>> promise = Promise.promise();
+		vertx.eventBus().request(address, new JsonObject().put("desde", desde).put("limite", limite),
+				new DeliveryOptions().setSendTimeout(timeout), promise);
+		return promise.future().map(reply -> {
+			JsonArray rows = reply.body().getJsonArray(field);
+			List<JsonObject> list = new ArrayList<>(rows.size());
+			for(int i = 0; i<rows.size(); i++) {
+				list.add(rows.getJsonObject(i));
+			}
+			return list;
+		});
+	}
+
+	/**
+	 * Roxxy payments against paid Neivor payment orders, by payment order code
+	 */
+	private class PagosPass extends Pass<String> {
+
+		private PagosPass(Report report) {
+			super("pagos", report);
+		}
+
+		@Override
+		protected Future<List<JsonObject>> roxxyPage(String desde, int limite) {
+			return shards.merge(shard -> query(shard, RoxxyQueries.SELECT_PAGOS_CONCILIACION, Tuple.of(desde, limite), Rows.list(RoxxyRows.PAGO_CONCILIACION)),
+					Comparator.comparing(this::roxxyKey), limite);
+		}
+
+		@Override
+		protected Future<List<JsonObject>> neivorPage(String desde, int limite) {
+			return requestNeivor(NeivorAddress.ORDENES_PAGO_PAGADAS, desde, limite, "ordenes");
+		}
+
+		@Override
+		protected Future<Set<String>> pending(String desde) {
+			return shards.all(shard -> query(shard, RoxxyQueries.SELECT_OUTBOX_ORDENES, Tuple.of(desde), Collectors.mapping(RoxxyRows.ORDEN_PAGO, Collectors.toSet())))
+					.map(pendientes -> {
+						Set<String> ordenes = new HashSet<>();
+						for(Set<String> shardOrdenes : pendientes) {
+							ordenes.addAll(shardOrdenes);
+						}
+						return ordenes;
+					});
+		}
+
+		@Override
+		protected String roxxyKey(JsonObject pago) {
+			return pago.getString("ordenPago");
+		}
+
+		@Override
+		protected String neivorKey(JsonObject orden) {
+			return orden.getString("codigo");
+		}
+
+		@Override
+		protected String duplicate() {
+			return "PAGO_DUPLICADO";
+		}
+
+		@Override
+		protected void compare(String clave, JsonObject pago, JsonObject orden, Chunk chunk) {
+			if(orden==null) {
+				chunk.add("ORDEN_NO_PAGADA", clave, pago, null);
+			} else if(pago==null) {
+				chunk.add("PAGO_INEXISTENTE", clave, null, orden);
+			} else if(!pago.getLong("montoTotal").equals(orden.getLong("valorPagar"))) {
+				chunk.add("MONTO_DIFERENTE", clave, pago, orden);
+			}
+		}
+	}
+
+	/**
+	 * Roxxy reversions against Neivor reversions, by Neivor reversion id
+	 */
+	private class ReversionesPass extends Pass<Long> {
+
+		private ReversionesPass(Report report) {
+			super("reversiones", report);
+		}
+
+		@Override
+		protected Future<List<JsonObject>> roxxyPage(Long desde, int limite) {
+			return shards.merge(shard -> query(shard, RoxxyQueries.SELECT_REVERSIONES_CONCILIACION, Tuple.of(desde, limite), Rows.list(RoxxyRows.REVERSION_CONCILIACION)),
+					Comparator.comparing(this::roxxyKey), limite);
+		}
+
+		@Override
+		protected Future<List<JsonObject>> neivorPage(Long desde, int limite) {
+			return requestNeivor(NeivorAddress.REVERSIONES, desde, limite, "reversiones");
+		}
+
+		@Override
+		protected Long roxxyKey(JsonObject reversion) {
+			return reversion.getLong("idReversionNeivor");
+		}
+
+		@Override
+		protected Long neivorKey(JsonObject reversion) {
+			return reversion.getLong("idReversion");
+		}
+
+		@Override
+		protected String duplicate() {
+			return "REVERSION_DUPLICADA";
+		}
+
+		@Override
+		protected void compare(Long clave, JsonObject roxxy, JsonObject neivor, Chunk chunk) {
+			if(neivor==null) {
+				chunk.add("REVERSION_SIN_NEIVOR", clave, roxxy, null);
+			} else if(roxxy==null) {
+				chunk.add("REVERSION_SIN_ROXXY", clave, null, neivor);
+			} else if(!roxxy.getLong("montoRevertido").equals(neivor.getLong("montoRevertido"))) {
+				chunk.add("MONTO_REVERTIDO_DIFERENTE", clave, roxxy, neivor);
+			} else if(!roxxy.getString("fechaReversion").equals(neivor.getString("fechaReversion"))) {
+				chunk.add("FECHA_REVERSION_DIFERENTE", clave, roxxy, neivor);
+			}
+		}
+	}
+
+	/**
+	 * Reads both sides by chunks of keys from desde, in key order. A chunk ends before the last key of every full page,
+	 * because the rows of that key may continue in the next page, so all the rows of a key are in the same chunk.
+	 * Chunks are compared on the worker pool, up to parallelism at the same time, while the next one is read.
+	 * @param <K> Key type
+	 */
+	private abstract class Pass<K extends Comparable<K>> {
+		private final String name;
+		private final Report report;
+		private final Promise<Void> done = Promise.promise();
+
+		private K desde;
+		private int limite;
+		private int comparing;
+		private boolean fetching;
+		private boolean exhausted;
+
+		private Pass(String name, Report report) {
+			this.name = name;
+			this.report = report;
+		}
+
+		/**
+		 * @param desde First key
+		 * @param limite Rows to read
+		 * @return Roxxy rows from desde in key order
+		 */
+		protected abstract Future<List<JsonObject>> roxxyPage(K desde, int limite);
+
+		/**
+		 * @param desde First key
+		 * @param limite Rows to read
+		 * @return Neivor rows from desde in key order
+		 */
+		protected abstract Future<List<JsonObject>> neivorPage(K desde, int limite);
+
+		/**
+		 * @param desde First key
+		 * @return Keys from desde that are being updated and must be skipped
+		 */
+		protected Future<Set<K>> pending(K desde) {
+			return Future.succeededFuture(Collections.emptySet());
+		}
+
+		protected abstract K roxxyKey(JsonObject row);
+
+		protected abstract K neivorKey(JsonObject row);
+
+		/**
+		 * @return Discrepancy of a Roxxy row with the same key as the previous one
+		 */
+		protected abstract String duplicate();
+
+		/**
+		 * Adds the discrepancy of a key, if any, to the chunk
+		 * @param clave Key
+		 * @param roxxy Roxxy row, null if only Neivor has the key
+		 * @param neivor Neivor row, null if only Roxxy has the key
+		 * @param chunk Chunk result
+		 */
+		protected abstract void compare(K clave, JsonObject roxxy, JsonObject neivor, Chunk chunk);
+
+		/**
+		 * @param inicio Lowest key
+		 * @return Completed when all the chunks are compared
+		 */
+		Future<Void> start(K inicio) {
+			this.desde = inicio;
+			this.limite = chunkSize;
+			this.fetch();
+			return done.future();
+		}
+
+		/**
+		 * Reads the next chunk if there are less than parallelism chunks being compared
+		 */
+		private void fetch() {
+			if(done.future().isComplete()) {
+				return;
+			}
+			if(exhausted) {
+				if(!fetching && comparing==0) {
+					done.complete();
+				}
+				return;
+			}
+			if(fetching || comparing>=parallelism) {
+				return;
+			}
+			fetching = true;
+			K from = desde;
+			int limit = limite;
+			CompositeFuture.all(this.roxxyPage(from, limit), this.neivorPage(from, limit), this.pending(from)).onComplete(resPages -> {
+				fetching = false;
+				if(resPages.failed()) {
+					done.tryFail(resPages.cause());
+					return;
+				}
+				List<JsonObject> roxxy = resPages.result().resultAt(0);
+				List<JsonObject> neivor = resPages.result().resultAt(1);
+				Set<K> pendientes = resPages.result().resultAt(2);
+
+				K hasta = null;
+				if(roxxy.size()==limit) {
+					hasta = this.roxxyKey(roxxy.get(roxxy.size()-1));
+				}
+				if(neivor.size()==limit) {
+					K last = this.neivorKey(neivor.get(neivor.size()-1));
+					if(hasta==null || last.compareTo(hasta)<0) {
+						hasta = last;
+					}
+				}
+				if(hasta!=null && hasta.compareTo(from)==0) {
+					//All the rows of a full page have the same key, it is read again with larger pages
+					limite = limit*2;
+					this.fetch();
+					return;
+				}
+				limite = chunkSize;
+				if(hasta==null) {
+					exhausted = true;
+				} else {
+					desde = hasta;
+				}
+
+				List<JsonObject> roxxyChunk = this.before(roxxy, hasta, true);
+				List<JsonObject> neivorChunk = this.before(neivor, hasta, false);
+				comparing++;
+				vertx.<Chunk>executeBlocking(promise -> promise.complete(this.merge(roxxyChunk, neivorChunk, pendientes)), false, resChunk -> {
+					comparing--;
+					if(resChunk.succeeded()) {
+						report.add(name, resChunk.result());
+					} else {
+						done.tryFail(resChunk.cause());
+					}
+					this.fetch();
+				});
+				this.fetch();
+			});
+		}
+
+		/**
+		 * @param rows Rows in key order
+		 * @param hasta First key of the next chunk, null for the last chunk
+		 * @param roxxy true for Roxxy rows
+		 * @return Rows with a key lower than hasta
+		 */
+		private List<JsonObject> before(List<JsonObject> rows, K hasta, boolean roxxy) {
+			if(hasta==null) {
+				return rows;
+			}
+			int end = 0;
+			while(end<rows.size() && (roxxy ? this.roxxyKey(rows.get(end)) : this.neivorKey(rows.get(end))).compareTo(hasta)<0) {
+				end++;
+			}
+			return new ArrayList<>(rows.subList(0, end));
+		}
+
+		/**
+		 * Merge join of a chunk, runs on the worker pool
+		 * @param roxxy Roxxy rows in key order
+		 * @param neivor Neivor rows in key order
+		 * @param pendientes Keys to be skipped
+		 * @return Chunk result
+		 */
+		private Chunk merge(List<JsonObject> roxxy, List<JsonObject> neivor, Set<K> pendientes) {
+			Chunk chunk = new Chunk(reportMax, roxxy.size());
+			int i = 0;
+			int j = 0;
+			K previa = null;
+			while(i<roxxy.size() || j<neivor.size()) {
+				K roxxyClave = i<roxxy.size() ? this.roxxyKey(roxxy.get(i)) : null;
+				K neivorClave = j<neivor.size() ? this.neivorKey(neivor.get(j)) : null;
+
+				if(roxxyClave!=null && previa!=null && roxxyClave.compareTo(previa)==0) {
+					if(!pendientes.contains(roxxyClave)) {
+						chunk.add(this.duplicate(), roxxyClave, roxxy.get(i), null);
+					}
+					i++;
+					continue;
+				}
+
+				int order = roxxyClave==null ? 1 : neivorClave==null ? -1 : roxxyClave.compareTo(neivorClave);
+				K clave = order<=0 ? roxxyClave : neivorClave;
+				JsonObject roxxyRow = order<=0 ? roxxy.get(i++) : null;
+				JsonObject neivorRow = order>=0 ? neivor.get(j++) : null;
+				if(roxxyRow!=null) {
+					previa = roxxyClave;
+				}
+				if(!pendientes.contains(clave)) {
+					this.compare(clave, roxxyRow, neivorRow, chunk);
+				}
+			}
+			return chunk;
+		}
+	}
+
+	/**
+	 * Discrepancies of a chunk, built on the worker pool
+	 */
+	private static class Chunk {
+		private final int max;
+		private final int filas;
+		private final Map<String, Integer> discrepancias = new HashMap<>();
+		private final List<JsonObject> detalle = new ArrayList<>();
+
+		private Chunk(int max, int filas) {
+			this.max = max;
+			this.filas = filas;
+		}
+
+		private void add(String tipo, Object clave, JsonObject roxxy, JsonObject neivor) {
+			discrepancias.merge(tipo, 1, Integer::sum);
+			if(detalle.size()<max) {
+				detalle.add(new JsonObject()
+						.put("tipo", tipo)
+						.put("clave", clave)
+						.put("roxxy", roxxy)
+						.put("neivor", neivor));
+			}
+		}
+	}
+
+	/**
+	 * Discrepancies of a reconciliation, updated on the event loop as the chunks are compared
+	 */
+	private class Report {
+		private final String inicio = Instant.now().toString();
+		private final Map<String, Long> filas = new LinkedHashMap<>();
+		private final Map<String, Long> discrepancias = new TreeMap<>();
+		private final JsonArray detalle = new JsonArray();
+
+		private void add(String pass, Chunk chunk) {
+			filas.merge(pass, (long) chunk.filas, Long::sum);
+			chunk.discrepancias.forEach((tipo, total) -> discrepancias.merge(tipo, (long) total, Long::sum));
+			for(JsonObject discrepancia : chunk.detalle) {
+				if(detalle.size()>=reportMax) {
+					break;
+				}
+				detalle.add(discrepancia);
+			}
+		}
+
+		private long total() {
+			long total = 0L;
+			for(long count : discrepancias.values()) {
+				total += count;
+			}
+			return total;
+		}
+
+		private JsonObject toJson(String estado) {
+			JsonObject filasJson = new JsonObject();
+			filas.forEach(filasJson::put);
+			JsonObject discrepanciasJson = new JsonObject();
+			discrepancias.forEach(discrepanciasJson::put);
+			return new JsonObject()
+					.put("estado", estado)
+					.put("inicio", inicio)
+					.put("fin", "EN CURSO".equals(estado) ? null : Instant.now().toString())
+					.put("filas", filasJson)
+					.put("discrepancias", discrepanciasJson)
+					.put("detalle", detalle.copy());
+		}
+	}
+}
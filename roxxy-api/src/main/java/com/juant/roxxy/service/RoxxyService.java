@@ -0,0 +1,88 @@
+package com.juant.roxxy.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.juant.roxxy.core.RoxxyAddress;
+import com.juant.roxxy.core.Shard;
+import com.juant.roxxy.core.ShardRouter;
+import com.juant.roxxy.query.RoxxyQueries;
+import com.juant.roxxy.query.RoxxyRows;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Serves Roxxy payments over the event bus (see RoxxyAddress) so Neivor can check them without a connection to the
+ * Roxxy database. Payment order codes go to the shard of the code, where their payments and outbox updates are kept
+ * (see RoxxyHandler).
+ * @author Juan Tzun
+ *
+ */
+public class RoxxyService {
+
+	private final ShardRouter shards;
+
+	/**
+	 * Constructor with parameters.
+	 * @param shards Shards of Roxxy database
+	 */
+	public RoxxyService(ShardRouter shards) {
+		this.shards = shards;
+	}
+
+	/**
+	 * Registers the consumers for all Roxxy addresses
+	 * @param vertx The entry point into the Vert.x Core API.
+	 */
+	public void register(Vertx vertx) {
+		vertx.eventBus().<JsonObject>consumer(RoxxyAddress.ORDENES_PAGO_COBRADAS, this::getPaidPaymentOrders);
+	}
+
+	/**
+	 * Payment orders with a payment or with updates waiting in the outbox, with a batch for every shard sent at the same time
+	 * @param message Request with codigos
+	 */
+	public void getPaidPaymentOrders(Message<JsonObject> message) {
+		JsonArray codigos = message.body().getJsonArray("codigos", new JsonArray());
+		Map<Shard, List<Tuple>> shardCodigos = new LinkedHashMap<>();
+		for(int i = 0; i<codigos.size(); i++) {
+			String codigo = codigos.getString(i);
+			shardCodigos.computeIfAbsent(shards.route(codigo), key -> new ArrayList<>()).add(Tuple.of(codigo, codigo));
+		}
+
+		Set<String> cobradas = new LinkedHashSet<>();
+		List<Future> queries = new ArrayList<>();
+		for(Map.Entry<Shard, List<Tuple>> shardCodigo : shardCodigos.entrySet()) {
+			Promise<RowSet<Row>> query = Promise.promise();
+			shardCodigo.getKey().execute(client -> client.preparedQuery(RoxxyQueries.SELECT_ORDEN_PAGO_COBRADA).executeBatch(shardCodigo.getValue()), query);
+			queries.add(query.future().onSuccess(resOrdenes -> {
+				//The batch has a result for every code
+				for(RowSet<Row> resOrden = resOrdenes; resOrden!=null; resOrden = resOrden.next()) {
+					for(Row row : resOrden) {
+						cobradas.add(RoxxyRows.ORDEN_PAGO.apply(row));
+					}
+				}
+			}));
+		}
+		CompositeFuture.all(queries).onComplete(resCobradas -> {
+			if(resCobradas.succeeded()) {
+				message.reply(new JsonObject().put("codigos", new JsonArray(new ArrayList<>(cobradas))));
+			} else {
+				message.fail(501, "pagos");
+			}
+		});
+	}
+}
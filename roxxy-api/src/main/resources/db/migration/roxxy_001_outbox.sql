@@ -0,0 +1,28 @@
+-- Roxxy schema changes of the payment order state outbox (see OutboxRelay and RoxxyHandler).
+-- Run once on every Roxxy shard, in file order, before deploying the version that uses them.
+
+-- One payment constancy by payment order. Payments are saved in the shard of the payment order code, so the unique
+-- index rejects a second payment of the same order (duplicate key 1062 is answered as ESTA ORDEN YA SE ENCUENTRA PAGADA).
+-- Duplicated payments must be reverted before the index can be created:
+--   SELECT orden_pago, COUNT(*) FROM roxxy_pagos GROUP BY orden_pago HAVING COUNT(*) > 1;
+ALTER TABLE roxxy_pagos ADD UNIQUE INDEX ux_roxxy_pagos_orden_pago (orden_pago);
+
+-- Payment order state updates and reversions waiting to be sent to Neivor, in id order
+CREATE TABLE roxxy_outbox (
+	id BIGINT NOT NULL AUTO_INCREMENT,
+	orden_pago VARCHAR(20) NOT NULL,
+	pagado TINYINT(1) NOT NULL,
+	id_reversion BIGINT NULL,
+	fecha_reversion VARCHAR(8) NULL,
+	monto_revertido DECIMAL(12,2) NULL,
+	intentos INT NOT NULL DEFAULT 0,
+	PRIMARY KEY (id),
+	INDEX ix_roxxy_outbox_orden_pago (orden_pago)
+);
+
+-- Updates of payment orders that Neivor does not know, moved from the outbox with the same id
+CREATE TABLE roxxy_outbox_rechazos LIKE roxxy_outbox;
+
+-- The Neivor reversion id is set by the outbox relay once Neivor creates the reversion
+ALTER TABLE roxxy_reversiones MODIFY id_txn_neivor_reversion BIGINT NULL;
+ALTER TABLE roxxy_reversiones ADD INDEX ix_roxxy_reversiones_neivor (id_txn_neivor_reversion);
@@ -0,0 +1,189 @@
+package com.juant.roxxy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import com.juant.roxxy.core.ApiVerticle;
+import com.juant.roxxy.core.ServerProfile;
+
+import io.vertx.config.ConfigRetriever;
+import io.vertx.config.ConfigRetrieverOptions;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Verticle;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+
+/**
+ * Component designed to run inside Vertx. Deploys the web services for Roxxy stores (RoxxyApiVerticle)
+ * and payment generation for Neivor (NeivorApiVerticle), each one with its own instance count
+ * (roxxy.instances, neivor.instances). When both APIs resolve to the same port, for example with only http.port configured,
+ * they are served by one HTTP server (see ApiVerticle.shareServer) and must have the same instances, otherwise the start fails.
+ * The APIs to deploy are read from deploy.apis or from the command line arguments, so every API
+ * can also run in its own process, for example: java com.juant.roxxy.RoxxyVerticle neivor
+ * The config is scanned every config.scan.period milliseconds and changes are applied by the running verticles.
+ * To change it without a new build use an external file: -Dvertx-config-path=/path/config.json
+ * While the config is read the heavy API classes are loaded and initialized, and the config scan starts once the APIs are
+ * deployed, so it does not compete with their start. With -Droxxy.training=true the process stops once every API is
+ * ready, it is the training run of the AppCDS archive built by the fast-start profile (see roxxy-app/pom.xml).
+ * @author Juan Tzun
+ *
+ */
+public class RoxxyVerticle extends AbstractVerticle {
+
+    //Classes initialized while the config is read: the API verticles, JSON mapping, web router and MySQL pool
+    private static final List<String> PRELOADED_CLASSES = Arrays.asList(
+    		"com.juant.roxxy.RoxxyApiVerticle",
+    		"com.juant.roxxy.NeivorApiVerticle",
+    		"io.vertx.core.json.jackson.DatabindCodec",
+    		"io.vertx.ext.web.impl.RouterImpl",
+    		"io.vertx.mysqlclient.impl.MySQLPoolImpl");
+
+    public static void main( String[] args ) {
+    	//Vertx used only to read the config, the application one is created with the server profile
+    	Vertx configVertx = Vertx.vertx();
+
+    	// Use config/config.json from resources/classpath
+    	ConfigRetriever configRetriever = ConfigRetriever.create(configVertx);
+    	CompletableFuture<JsonObject> config = configRetriever.getConfig().toCompletionStage().toCompletableFuture();
+
+    	//The config is read on the config Vertx threads meanwhile
+    	preloadClasses();
+
+    	JsonObject configJson;
+    	try {
+    		configJson = config.get();
+    	} catch (Exception e) {
+    		System.out.println("Could not read the config: "+e.getMessage());
+    		return;
+    	} finally {
+    		configVertx.close();
+    	}
+
+    	//Native transport (epoll) with NIO fallback and thread pool sizes
+    	Vertx vertx = Vertx.vertx(ServerProfile.getVertxOptions(configJson));
+    	System.out.println("Native transport "+(vertx.isNativeTransportEnabled() ? "enabled" : "not available, using NIO"));
+
+    	//APIs from command line arguments replace deploy.apis
+    	if(args.length>0) {
+    		configJson.put("deploy.apis", new JsonArray().add(args[0]));
+    		for(int i = 1; i<args.length; i++) {
+    			configJson.getJsonArray("deploy.apis").add(args[i]);
+    		}
+    	}
+
+    	DeploymentOptions options = new DeploymentOptions().setConfig(configJson);
+
+    	vertx.deployVerticle(new RoxxyVerticle(), options, resDeploy -> {
+    		if(Boolean.getBoolean("roxxy.training")) {
+    			stopWhenReady(vertx, configJson, resDeploy.succeeded());
+    			return;
+    		}
+
+    		//Config changes are published to the API verticles, they apply pool sizes and limits without restart
+    		ConfigRetriever configListener = ConfigRetriever.create(vertx, new ConfigRetrieverOptions()
+    				.setIncludeDefaultStores(true)
+    				.setScanPeriod(configJson.getLong("config.scan.period", 5000L)));
+    		configListener.listen(change -> {
+    			JsonObject newConfig = change.getNewConfiguration();
+    			newConfig.put("deploy.apis", configJson.getJsonArray("deploy.apis"));
+    			vertx.eventBus().publish(ApiVerticle.CONFIG_CHANGED, newConfig);
+    		});
+    	});
+    }
+
+    /**
+     * Loads and initializes the classes used by the API verticles on start
+     */
+    private static void preloadClasses() {
+    	ClassLoader classLoader = RoxxyVerticle.class.getClassLoader();
+    	for(String className : PRELOADED_CLASSES) {
+    		try {
+    			Class.forName(className, true, classLoader);
+    		} catch (ClassNotFoundException | LinkageError e) {
+    			System.out.println("Could not preload "+className+": "+e.getMessage());
+    		}
+    	}
+    }
+
+    /**
+     * Training run: stops the process once every deployed API reports ready (see ApiVerticle), so the classes loaded
+     * by the start, the database warm up and the JIT warm up requests are dumped to the AppCDS archive
+     * @param vertx Application Vertx
+     * @param configJson Application config
+     * @param deployed false if an API could not be deployed, the run fails at once
+     */
+    private static void stopWhenReady(Vertx vertx, JsonObject configJson, boolean deployed) {
+    	if(!deployed) {
+    		System.exit(1);
+    	}
+    	JsonArray apis = configJson.getJsonArray("deploy.apis", new JsonArray().add("neivor").add("roxxy"));
+    	vertx.setPeriodic(100L, timer -> {
+    		LocalMap<String, Integer> readiness = vertx.sharedData().getLocalMap("api.readiness");
+    		for(Object api : apis) {
+    			if(readiness.getOrDefault(api.toString(), 0)<configJson.getInteger(api+".instances", 1)) {
+    				return;
+    			}
+    		}
+    		System.out.println("Training run finished");
+    		vertx.close(resClose -> System.exit(0));
+    	});
+    }
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+    	System.out.println("Verticle RoxxyVerticle Started");
+
+    	JsonArray apis = config().getJsonArray("deploy.apis", new JsonArray().add("neivor").add("roxxy"));
+
+    	List<Future> deployments = new ArrayList<>();
+    	int port = ApiVerticle.getPort(config(), "roxxy");
+    	if(apis.contains("neivor") && apis.contains("roxxy") && port==ApiVerticle.getPort(config(), "neivor")) {
+    		//Same port, for example only http.port configured: one HTTP server with both sub routers and the same instances
+    		if(!config().getInteger("roxxy.instances", 1).equals(config().getInteger("neivor.instances", 1))) {
+    			System.out.println("Could not deploy the APIs, roxxy and neivor use port "+port+" with different instances");
+    			startPromise.fail("roxxy and neivor use port "+port+", set roxxy.http.port and neivor.http.port"
+    					+" or the same roxxy.instances and neivor.instances");
+    			return;
+    		}
+    		deployments.add(this.deployApi(() -> new RoxxyApiVerticle().shareServer(new NeivorApiVerticle()), "roxxy"));
+    	} else {
+    		if(apis.contains("neivor")) {
+    			deployments.add(this.deployApi(NeivorApiVerticle::new, "neivor"));
+    		}
+    		if(apis.contains("roxxy")) {
+    			deployments.add(this.deployApi(RoxxyApiVerticle::new, "roxxy"));
+    		}
+    	}
+
+    	CompositeFuture.all(deployments).<Void>mapEmpty().onComplete(startPromise);
+    }
+
+    /**
+     * Deploys an API verticle with the instances configured for it (<api>.instances)
+     * @param verticle Creates every instance of the verticle
+     * @param api API config prefix
+     * @return Deployment id when all the instances are deployed
+     */
+    private Future<String> deployApi(Supplier<Verticle> verticle, String api) {
+    	DeploymentOptions options = new DeploymentOptions()
+    			.setConfig(config())
+    			.setInstances(config().getInteger(api+".instances", 1));
+
+    	return vertx.deployVerticle(verticle, options)
+    			.onFailure(cause -> System.out.println("Could not deploy "+api+" API: "+cause.getMessage()));
+    }
+
+    @Override
+    public void stop() {
+    	System.out.println("Verticle RoxxyVerticle Stopped");
+    }
+}
@@ -0,0 +1,677 @@
+package com.juant.roxxy.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.CorsHandler;
+import io.vertx.ext.web.handler.StaticHandler;
+import io.vertx.mysqlclient.MySQLConnectOptions;
+import io.vertx.mysqlclient.MySQLPool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.SqlConnection;
+
+/**
+ * Base component for the API verticles. Contains the web server settings shared by Roxxy and Neivor,
+ * every subclass mounts its own sub router and listens on its own port so each API can be deployed
+ * with its own instance count and database pool. The port is read from <prefix>.http.port, then http.port (default 8090).
+ * APIs of one process that resolve to the same port are served by one HTTP server (see shareServer), otherwise the
+ * second API fails to start: Vert.x would split the connections between their routers and answer 404 to half of them.
+ * All settings are read from the verticle config using the prefix returned by getConfigPrefix
+ * (for example roxxy.http.port, roxxy.pool.size, roxxy.database.name).
+ * A database can be split in shards with their own pools (see createShards).
+ * On start the verticle warms up its database pools, starts listening, sends warm up requests to itself and then
+ * reports ready on GET /ready. Config changes published on CONFIG_CHANGED are applied without restart.
+ * Every database or shard has a circuit breaker (see CircuitBreaker), their state is available on GET /metrics.
+ * Every instance samples the lag of its event loop and the acquire wait of its pools, available with the blocked thread
+ * reports on GET /diagnostics (see Diagnostics).
+ * @author Juan Tzun
+ *
+ */
+public abstract class ApiVerticle extends AbstractVerticle {
+
+	/**
+	 * Event bus address where the launcher publishes the new config when config.json changes
+	 */
+	public static final String CONFIG_CHANGED = "roxxy.config.changed";
+
+	//Shared connection keys, a shard can replace them (see getPoolSettings)
+	private static final List<String> SHARD_KEYS = Arrays.asList("database.host", "database.port", "database.user", "database.password");
+
+	//Current config, replaced when config.json changes
+	private JsonObject currentConfig;
+
+	//MySQL client connections by pool name, the database prefix or database prefix.shard name
+	private final Map<String, MySQLPool> pools = new LinkedHashMap<>();
+
+	//Database prefix and shard of every pool
+	private final Map<String, String> poolDatabases = new HashMap<>();
+	private final Map<String, Shard> poolShards = new HashMap<>();
+
+	private StaticAssetHandler staticAssetHandler;
+
+	//APIs served by the HTTP server of this verticle (see shareServer)
+	private final List<ApiVerticle> sharedApis = new ArrayList<>();
+
+	/**
+	 * @return Prefix of the config keys for this API (roxxy or neivor)
+	 */
+	protected abstract String getConfigPrefix();
+
+	/**
+	 * @return Path where the API sub router is mounted, for example /api/roxxy/
+	 */
+	protected abstract String getMountPoint();
+
+	/**
+	 * Creates database pools, event bus consumers and the API sub router.
+	 * @return Router with the API routes
+	 */
+	protected abstract Router createAPISubRouter();
+
+	/**
+	 * Listen port of an API: <api>.http.port, then http.port (default 8090)
+	 * @param config Application config
+	 * @param api API config prefix
+	 * @return Listen port
+	 */
+	public static int getPort(JsonObject config, String api) {
+		return config.getInteger(api+".http.port", config.getInteger("http.port", 8090));
+	}
+
+	/**
+	 * Serves another API from the HTTP server of this verticle, for APIs of one process that resolve to the same port.
+	 * The other API is not deployed: it runs on the context of this verticle, is started and stopped with it and has
+	 * its instance count, so both APIs must be configured with the same instances.
+	 * @param api API verticle sharing the port
+	 * @return This verticle
+	 */
+	public ApiVerticle shareServer(ApiVerticle api) {
+		sharedApis.add(api);
+		return this;
+	}
+
+	@Override
+	public void init(Vertx vertx, Context context) {
+		super.init(vertx, context);
+		for(ApiVerticle api : sharedApis) {
+			api.init(vertx, context);
+		}
+	}
+
+	@Override
+	public void start(Promise<Void> startPromise) {
+		//Configure listen port -> <prefix>.http.port or http.port, one API by port in this process
+		int port = getPort(config(), getConfigPrefix());
+		LocalMap<Integer, String> ports = vertx.sharedData().getLocalMap("api.ports");
+		String portApi = ports.putIfAbsent(port, getConfigPrefix());
+		if(portApi!=null && !portApi.equals(getConfigPrefix())) {
+			System.out.println("Could not start a HTTP server for "+getConfigPrefix()+", port "+port+" is used by "+portApi);
+			startPromise.fail("Port "+port+" of "+getConfigPrefix()+" is used by "+portApi+", set "+getConfigPrefix()+".http.port"
+					+" or run both APIs with the same instances");
+			return;
+		}
+
+		this.initialize();
+
+		Router router = Router.router(vertx);
+
+		Set<String> allowedHeaders = new HashSet<>();
+		allowedHeaders.add("x-requested-with");
+		allowedHeaders.add("Access-Control-Allow-Origin");
+		allowedHeaders.add("origin");
+		allowedHeaders.add("Content-Type");
+		allowedHeaders.add("accept");
+		allowedHeaders.add("Access-Control-Expose-Headers");
+
+		Set<HttpMethod> allowedMethods = new HashSet<>();
+		allowedMethods.add(HttpMethod.GET);
+		allowedMethods.add(HttpMethod.POST);
+		allowedMethods.add(HttpMethod.DELETE);
+		allowedMethods.add(HttpMethod.PATCH);
+		allowedMethods.add(HttpMethod.OPTIONS);
+		allowedMethods.add(HttpMethod.PUT);
+
+		router.route().handler(CorsHandler.create("*")
+				.allowedHeaders(allowedHeaders)
+				.allowedMethods(allowedMethods));
+
+		router.get("/").handler(context1 -> {
+			HttpServerResponse httpServerResponse = context1.response();
+			httpServerResponse.putHeader("content-type", "text/html").end("<h1>Success</h1>");
+		});
+
+		//Readiness probe, healthy once every instance of this API finished its warm up
+		router.get("/ready").handler(this::getReadiness);
+
+		//Circuit breaker state of the databases
+		router.get("/metrics").handler(this::getMetrics);
+
+		//Event loop lag, pool acquire wait and blocked threads
+		router.get("/diagnostics").handler(this::getDiagnostics);
+
+		//Initiate handlers for API sub routes, also the ones of the APIs sharing the port
+		router.mountSubRouter(getMountPoint(), createAPISubRouter());
+		for(ApiVerticle api : sharedApis) {
+			api.initialize();
+			router.mountSubRouter(api.getMountPoint(), api.createAPISubRouter());
+		}
+
+		//Default if no routes are matched. Static files with cache headers, in memory cache and precompressed variants (see StaticAssetHandler)
+		if(config().getBoolean("static.caching.enabled", true)) {
+			staticAssetHandler = new StaticAssetHandler(vertx.fileSystem(), config());
+			router.route().handler(staticAssetHandler);
+		} else {
+			router.route().handler(StaticHandler.create().setCachingEnabled(false));
+		}
+
+		//Database warm up before listening, JIT warm up requests once listening and then ready. Server options from config (see ServerProfile)
+		List<Future> warmUps = new ArrayList<>();
+		for(ApiVerticle api : this.getServerApis()) {
+			warmUps.add(api.warmUp()
+				.recover(cause -> {
+					System.out.println("Database warm up for "+api.getConfigPrefix()+" failed: "+cause.getMessage());
+					return Future.succeededFuture();
+				}));
+		}
+		CompositeFuture.join(warmUps)
+			.compose(v -> vertx.createHttpServer(ServerProfile.getHttpServerOptions(config(), port)).requestHandler(router).listen())
+			.onComplete(asyncResult -> {
+				//If port is not occupied
+				if(asyncResult.succeeded()) {
+					System.out.println("HTTP server for "+getConfigPrefix()+" running on port "+port);
+					this.sampleLag();
+					startPromise.complete();
+					for(ApiVerticle api : this.getServerApis()) {
+						api.probePools();
+						api.sendWarmUpRequests(port).onComplete(resWarmUp -> api.setReady());
+					}
+				} else {
+					System.out.println("Could not start a HTTP server for "+getConfigPrefix());
+					startPromise.fail(asyncResult.cause());
+				}
+			});
+	}
+
+	@Override
+	public void stop() {
+		System.out.println("Verticle "+getClass().getSimpleName()+" Stopped");
+		LocalMap<String, Integer> readiness = vertx.sharedData().getLocalMap("api.readiness");
+		readiness.computeIfPresent(getConfigPrefix(), (api, ready) -> ready-1);
+		for(MySQLPool pool : pools.values()) {
+			pool.close();
+		}
+		for(ApiVerticle api : sharedApis) {
+			api.stop();
+		}
+	}
+
+	/**
+	 * Reads the config and listens to its changes, before the API sub router is created
+	 */
+	private void initialize() {
+		System.out.println("Verticle "+getClass().getSimpleName()+" Started");
+
+		currentConfig = super.config().copy();
+		vertx.eventBus().<JsonObject>consumer(CONFIG_CHANGED, message -> this.reloadConfig(message.body()));
+	}
+
+	/**
+	 * @return This API and the APIs sharing its HTTP server
+	 */
+	private List<ApiVerticle> getServerApis() {
+		List<ApiVerticle> apis = new ArrayList<>();
+		apis.add(this);
+		apis.addAll(sharedApis);
+		return apis;
+	}
+
+	/**
+	 * @return Current config, it changes when config.json changes
+	 */
+	@Override
+	public JsonObject config() {
+		return currentConfig!=null ? currentConfig : super.config();
+	}
+
+	/**
+	 * Applies a new config without restart. Pools whose connection settings or size changed are replaced by new
+	 * warmed up pools, the old ones keep serving the queries already sent and are closed after
+	 * database.pool.drain.timeout milliseconds (default 30000). Then applyConfig is called with the new config.
+	 * Shards added or removed need a restart.
+	 * @param newConfig New config
+	 */
+	private void reloadConfig(JsonObject newConfig) {
+		JsonObject previousConfig = currentConfig;
+		currentConfig = newConfig.copy();
+		System.out.println("Config changed for "+getConfigPrefix());
+
+		for(String name : new ArrayList<>(pools.keySet())) {
+			String database = poolDatabases.get(name);
+			JsonObject settings = this.getPoolSettings(currentConfig, database, name);
+			if(!this.getPoolSettings(previousConfig, database, name).equals(settings)) {
+				MySQLPool oldPool = pools.get(name);
+				MySQLPool newPool = this.createPool(database, name);
+				this.warmUpPool(newPool, name, settings, this.getStatements(database))
+					.onComplete(resWarmUp -> {
+						poolShards.get(name).setClient(newPool);
+						vertx.setTimer(config().getLong("database.pool.drain.timeout", 30000L), timer -> oldPool.close());
+						System.out.println("Pool "+name+" replaced with "+settings.getInteger("pool.size")+" connections");
+					});
+			}
+		}
+		for(String database : new HashSet<>(poolDatabases.values())) {
+			if(!Objects.equals(this.getShardNames(previousConfig, database), this.getShardNames(currentConfig, database))) {
+				System.out.println("Shards of "+database+" changed, restart to apply them");
+			}
+		}
+
+		for(String name : pools.keySet()) {
+			this.getCircuitBreaker(name).configure(currentConfig);
+		}
+		LocalMap<String, RateLimiter> rateLimiters = vertx.sharedData().getLocalMap("api.rate.limiters");
+		if(rateLimiters.get(getConfigPrefix())!=null) {
+			rateLimiters.get(getConfigPrefix()).configure(currentConfig);
+		}
+		if(staticAssetHandler!=null) {
+			staticAssetHandler.configure(currentConfig);
+		}
+		this.getDiagnostics().configure(currentConfig);
+		this.applyConfig(currentConfig);
+	}
+
+	/**
+	 * Called when the config changes, after the pools were checked. Subclasses pass the new settings to their handlers.
+	 * @param config New config
+	 */
+	protected void applyConfig(JsonObject config) {
+	}
+
+	/**
+	 * Creates the shards of a database and their pools. The shards are listed in <database>.shards, every one with a name
+	 * and the settings it does not share with the other shards: database.name, pool.size, pool.min.size, database.host,
+	 * database.port, database.user and database.password, for example
+	 * [{"name":"a","database.name":"neivor_a"},{"name":"b","database.name":"neivor_b","database.host":"10.0.0.2"}].
+	 * Missing settings are read as for a single pool, so several schemas of a local server can stand in for the shards.
+	 * Without <database>.shards the database has a single shard named as the database. Shards are only appended to the
+	 * list, their position is part of the sequence numbers they generate (see ShardRouter.interleave).
+	 * @param database Prefix of the database (roxxy or neivor)
+	 * @return Router over the shards
+	 */
+	protected ShardRouter createShards(String database) {
+		List<Shard> shards = new ArrayList<>();
+		List<String> names = this.getShardNames(config(), database);
+		for(int i = 0; i<names.size(); i++) {
+			String name = names.get(i);
+			Shard shard = new Shard(name, i, this.createPool(database, name), this.getCircuitBreaker(name));
+			poolShards.put(name, shard);
+			shards.add(shard);
+		}
+		return new ShardRouter(database, shards, config());
+	}
+
+	/**
+	 * @param config Application config
+	 * @param database Prefix of the database
+	 * @return Pool names of the shards, the database prefix when it is not sharded
+	 */
+	private List<String> getShardNames(JsonObject config, String database) {
+		JsonArray shards = config.getJsonArray(database+".shards", new JsonArray());
+		if(shards.isEmpty()) {
+			return Collections.singletonList(database);
+		}
+		List<String> names = new ArrayList<>();
+		for(int i = 0; i<shards.size(); i++) {
+			names.add(database+"."+shards.getJsonObject(i).getString("name", String.valueOf(i)));
+		}
+		return names;
+	}
+
+	/**
+	 * Settings used to create a pool, the pool is replaced when they change. Host, port and credentials are shared,
+	 * database name and pool size are read with the database prefix (roxxy.database.name, roxxy.pool.size) and the
+	 * shard replaces the ones it has.
+	 * @param config Application config
+	 * @param database Prefix of the database
+	 * @param name Pool name
+	 * @return Pool settings
+	 */
+	private JsonObject getPoolSettings(JsonObject config, String database, String name) {
+		JsonObject settings = new JsonObject()
+				.put("database.name", config.getString(database+".database.name"))
+				.put("pool.size", config.getInteger(database+".pool.size", 5))
+				.put("pool.min.size", config.getInteger(database+".pool.min.size", 1))
+				.put("database.statement.cache.size", config.getInteger("database.statement.cache.size", 64))
+				.put("database.max.execution.time", config.getLong("database.max.execution.time", 10000L))
+				.put("database.pool.wait.timeout", config.getInteger("database.pool.wait.timeout", 5000));
+		for(String key : SHARD_KEYS) {
+			settings.put(key, config.getValue(key));
+		}
+
+		JsonArray shards = config.getJsonArray(database+".shards", new JsonArray());
+		for(int i = 0; i<shards.size(); i++) {
+			JsonObject shard = shards.getJsonObject(i);
+			if(name.equals(database+"."+shard.getString("name", String.valueOf(i)))) {
+				for(String key : settings.fieldNames()) {
+					if(shard.containsKey(key)) {
+						settings.put(key, shard.getValue(key));
+					}
+				}
+			}
+		}
+		return settings;
+	}
+
+	/**
+	 * Creates the pooled client for a database or a shard (see getPoolSettings).
+	 * The pool is warmed up on start, replaced when its settings change and closed when the verticle stops.
+	 * Requests wait for a connection at most database.pool.wait.timeout milliseconds (default 5000) and every connection
+	 * limits its SELECT statements to database.max.execution.time milliseconds (default 10000, 0 for no limit), so queries
+	 * of requests whose deadline passed do not keep the connections (see Deadline).
+	 * @param database Prefix of the database (roxxy or neivor)
+	 * @param name Pool name
+	 * @return Pooled client for the database
+	 */
+	private MySQLPool createPool(String database, String name) {
+		JsonObject settings = this.getPoolSettings(config(), database, name);
+		MySQLConnectOptions connectOptions = new MySQLConnectOptions()
+				.setPort(settings.getInteger("database.port"))
+				.setHost(settings.getString("database.host"))
+				.setDatabase(settings.getString("database.name"))
+				.setUser(settings.getString("database.user"))
+				.setPassword(settings.getString("database.password"))
+				.setCachePreparedStatements(true)
+				.setPreparedStatementCacheMaxSize(settings.getInteger("database.statement.cache.size"));
+
+		PoolOptions poolOptions = new PoolOptions()
+				.setMaxSize(settings.getInteger("pool.size"))
+				.setConnectionTimeout(settings.getInteger("database.pool.wait.timeout"))
+				.setConnectionTimeoutUnit(TimeUnit.MILLISECONDS);
+
+		MySQLPool pool = MySQLPool.pool(vertx, connectOptions, poolOptions);
+		long maxExecutionTime = settings.getLong("database.max.execution.time");
+		pool.connectHandler(connection -> connection
+				.query("SET SESSION max_execution_time = "+maxExecutionTime)
+				.execute()
+				.onComplete(resSession -> connection.close()));
+		pools.put(name, pool);
+		poolDatabases.put(name, database);
+		this.getDiagnostics().setPool(name, this.getCircuitBreaker(name), settings.getInteger("pool.size"), getInteger("instances", 1));
+		return pool;
+	}
+
+	/**
+	 * Circuit breaker of a database or a shard, shared by all the verticles that use it in this Vert.x instance
+	 * @param name Pool name
+	 * @return Circuit breaker, created on first use
+	 */
+	private CircuitBreaker getCircuitBreaker(String name) {
+		LocalMap<String, CircuitBreaker> breakers = vertx.sharedData().getLocalMap("database.breakers");
+		return breakers.computeIfAbsent(name, key -> new CircuitBreaker(key, config()));
+	}
+
+	/**
+	 * Rate limiter by entity of this API, shared by all its instances in this Vert.x instance
+	 * @return Rate limiter, created on first use
+	 */
+	protected RateLimiter getRateLimiter() {
+		LocalMap<String, RateLimiter> rateLimiters = vertx.sharedData().getLocalMap("api.rate.limiters");
+		return rateLimiters.computeIfAbsent(getConfigPrefix(), prefix -> new RateLimiter(prefix, config()));
+	}
+
+	/**
+	 * Mutex by key of this API, shared by all its instances in this Vert.x instance
+	 * @param name Name of the mutex, also the prefix of its config keys (for example neivor.order)
+	 * @return Mutex, created on first use
+	 */
+	protected KeyedMutex getKeyedMutex(String name) {
+		LocalMap<String, KeyedMutex> mutexes = vertx.sharedData().getLocalMap("api.keyed.mutexes");
+		return mutexes.computeIfAbsent(name, key -> new KeyedMutex(key, config()));
+	}
+
+	/**
+	 * Training run of the AppCDS archive (-Droxxy.training=true, see RoxxyVerticle). The subclasses do not start their
+	 * background jobs in a training run, it only starts the APIs and stops, and must not write to the databases.
+	 * @return true in a training run
+	 */
+	protected boolean isTraining() {
+		return Boolean.getBoolean("roxxy.training");
+	}
+
+	/**
+	 * Diagnostics of this Vert.x instance, shared by all the API verticles
+	 * @return Diagnostics, created on first use
+	 */
+	private Diagnostics getDiagnostics() {
+		LocalMap<String, Diagnostics> diagnostics = vertx.sharedData().getLocalMap("api.diagnostics");
+		return diagnostics.computeIfAbsent("diagnostics", key -> new Diagnostics(config()));
+	}
+
+	/**
+	 * Schedules a timer on the event loop of this instance every diagnostics.lag.interval milliseconds and records how late
+	 * it runs. A busy event loop runs it late, a blocked one does not run it and is reported by the watchdog of Diagnostics.
+	 */
+	private void sampleLag() {
+		long interval = this.getDiagnostics().getLagInterval();
+		long due = System.nanoTime()+TimeUnit.MILLISECONDS.toNanos(interval);
+		vertx.setTimer(interval, timer -> {
+			this.getDiagnostics().recordLag(Math.max(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-due), 0L));
+			this.sampleLag();
+		});
+	}
+
+	/**
+	 * Every diagnostics.pool.probe.interval milliseconds asks every pool of this instance for a connection and records how
+	 * long it waited, the connection is returned at once. Pools with an open circuit are not probed.
+	 */
+	private void probePools() {
+		vertx.setTimer(this.getDiagnostics().getPoolProbeInterval(), timer -> {
+			for(Map.Entry<String, MySQLPool> pool : pools.entrySet()) {
+				if(this.getCircuitBreaker(pool.getKey()).getState()==CircuitBreaker.State.OPEN) {
+					continue;
+				}
+				long start = System.nanoTime();
+				pool.getValue().getConnection().onComplete(resConnection -> {
+					long wait = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-start);
+					this.getDiagnostics().recordAcquire(pool.getKey(), wait, resConnection.succeeded());
+					if(resConnection.succeeded()) {
+						resConnection.result().close();
+					}
+				});
+			}
+			this.probePools();
+		});
+	}
+
+	/**
+	 * Database warm up, runs before the HTTP server starts listening. Warms up the pools of every shard.
+	 * @return Completed when the warm up finishes
+	 */
+	protected Future<Void> warmUp() {
+		List<Future> warmUps = new ArrayList<>();
+		for(Map.Entry<String, MySQLPool> pool : pools.entrySet()) {
+			String database = poolDatabases.get(pool.getKey());
+			warmUps.add(this.warmUpPool(pool.getValue(), pool.getKey(), this.getPoolSettings(config(), database, pool.getKey()),
+					this.getStatements(database)));
+		}
+		return CompositeFuture.all(warmUps).mapEmpty();
+	}
+
+	/**
+	 * SQL statements prepared on the pool connections during the warm up
+	 * @param database Prefix of the database
+	 * @return Statements used with the database, none by default
+	 */
+	protected List<String> getStatements(String database) {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Opens <database>.pool.min.size connections (default 1, at most the pool size) at the same time and prepares every
+	 * statement on each of them, so the first requests find open connections with the statements already in cache.
+	 * @param pool Pooled client for the database
+	 * @param name Pool name
+	 * @param settings Pool settings (see getPoolSettings)
+	 * @param statements SQL statements used with the database
+	 * @return Completed when all the connections are back in the pool
+	 */
+	private Future<Void> warmUpPool(MySQLPool pool, String name, JsonObject settings, List<String> statements) {
+		int poolSize = settings.getInteger("pool.size");
+		int minSize = Math.min(settings.getInteger("pool.min.size"), poolSize);
+
+		List<Future> connections = new ArrayList<>();
+		for(int i = 0; i<minSize; i++) {
+			connections.add(pool.getConnection());
+		}
+
+		return CompositeFuture.join(connections)
+			.compose(all -> {
+				List<Future> prepared = new ArrayList<>();
+				for(Future connection : connections) {
+					prepared.add(this.prepareStatements((SqlConnection) connection.result(), statements, 0));
+				}
+				return CompositeFuture.all(prepared);
+			})
+			.eventually(v -> {
+				//Return the connections to the pool
+				for(Future connection : connections) {
+					if(connection.succeeded()) {
+						((SqlConnection) connection.result()).close();
+					}
+				}
+				return Future.succeededFuture();
+			})
+			.onSuccess(v -> System.out.println("Database "+name+" warmed up with "+minSize+" connections and "+statements.size()+" statements"))
+			.mapEmpty();
+	}
+
+	/**
+	 * Prepares the statement at index and then the following ones on a connection
+	 * @param connection Database connection
+	 * @param statements SQL statements
+	 * @param index Statement to be prepared
+	 * @return Completed when all the statements are prepared
+	 */
+	private Future<Void> prepareStatements(SqlConnection connection, List<String> statements, int index) {
+		if(index>=statements.size()) {
+			return Future.succeededFuture();
+		}
+		return connection.prepare(statements.get(index))
+				.compose(preparedStatement -> this.prepareStatements(connection, statements, index+1));
+	}
+
+	/**
+	 * Requests sent to this API after it starts listening to warm up the JIT. They must not change any data,
+	 * by default only GET /.
+	 * @return Warm up requests
+	 */
+	protected List<WarmUpRequest> getWarmUpRequests() {
+		return Collections.singletonList(new WarmUpRequest(HttpMethod.GET, "/", null));
+	}
+
+	/**
+	 * Sends the warm up requests warmup.requests times (default 100), one after the other
+	 * @param port Listen port of the API
+	 * @return Completed when all the requests are answered
+	 */
+	private Future<Void> sendWarmUpRequests(int port) {
+		List<WarmUpRequest> requests = this.getWarmUpRequests();
+		int total = config().getInteger("warmup.requests", 100)*requests.size();
+		HttpClient client = vertx.createHttpClient();
+
+		Future<Void> warmUp = Future.succeededFuture();
+		for(int i = 0; i<total; i++) {
+			WarmUpRequest warmUpRequest = requests.get(i%requests.size());
+			warmUp = warmUp.compose(v -> warmUpRequest.send(client, port));
+		}
+		return warmUp
+			.onFailure(cause -> System.out.println("JIT warm up for "+getConfigPrefix()+" failed: "+cause.getMessage()))
+			.eventually(v -> client.close());
+	}
+
+	/**
+	 * Marks this instance as ready
+	 */
+	private void setReady() {
+		LocalMap<String, Integer> readiness = vertx.sharedData().getLocalMap("api.readiness");
+		int ready = readiness.merge(getConfigPrefix(), 1, Integer::sum);
+		System.out.println("API "+getConfigPrefix()+" ready ("+ready+" of "+getInteger("instances", 1)+" instances)");
+	}
+
+	/**
+	 * Readiness probe. Status code 200 when every instance of this API and of the APIs sharing its server is ready, 503 otherwise
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	private void getReadiness(RoutingContext routingContext) {
+		LocalMap<String, Integer> readiness = vertx.sharedData().getLocalMap("api.readiness");
+		boolean ready = true;
+		for(ApiVerticle api : this.getServerApis()) {
+			ready &= readiness.getOrDefault(api.getConfigPrefix(), 0)>=api.getInteger("instances", 1);
+		}
+
+		routingContext.response()
+			.setStatusCode(ready ? 200 : 503)
+			.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+			.end(new JsonObject().put("ready", ready).encode());
+	}
+
+	/**
+	 * Circuit breaker metrics of every database or shard by pool name, for example {"roxxy":{"state":"CLOSED","calls":20,...}}
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	private void getMetrics(RoutingContext routingContext) {
+		LocalMap<String, CircuitBreaker> breakers = vertx.sharedData().getLocalMap("database.breakers");
+		JsonObject metrics = new JsonObject();
+		for(Map.Entry<String, CircuitBreaker> breaker : breakers.entrySet()) {
+			metrics.put(breaker.getKey(), breaker.getValue().getMetrics());
+		}
+
+		routingContext.response()
+			.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+			.end(new JsonObject().put("breakers", metrics).encode());
+	}
+
+	/**
+	 * Diagnostics of this Vert.x instance: lag of every event loop, acquire wait and connections of every pool and the last
+	 * blocked thread reports with their stack trace (see Diagnostics)
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 */
+	private void getDiagnostics(RoutingContext routingContext) {
+		routingContext.response()
+			.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+			.end(this.getDiagnostics().toJson().encode());
+	}
+
+	/**
+	 * Reads an integer setting for this API
+	 * @param key Key without the API prefix
+	 * @param defaultValue Value used when the key is not configured
+	 * @return Configured value
+	 */
+	protected int getInteger(String key, int defaultValue) {
+		return config().getInteger(getConfigPrefix()+"."+key, defaultValue);
+	}
+}
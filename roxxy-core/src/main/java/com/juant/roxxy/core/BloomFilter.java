@@ -0,0 +1,110 @@
+package com.juant.roxxy.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * Bloom filter of strings, it answers if a string was maybe added or was surely not added. The bits are sized for the
+ * expected strings and the false positive rate, more strings raise the rate. Every string sets hashes bits derived from
+ * the two halves of a 64 bit hash (FNV-1a spread with the murmur3 finalizer). Strings can be added and checked from any
+ * thread without locks.
+ * @author Juan Tzun
+ *
+ */
+public class BloomFilter implements Shareable {
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final AtomicLongArray words;
+	private final long bits;
+	private final int hashes;
+	private final long created = System.currentTimeMillis();
+
+	/**
+	 * Constructor with parameters.
+	 * @param expected Strings expected to be added
+	 * @param falsePositives False positive rate with the expected strings, for example 0.01
+	 */
+	public BloomFilter(long expected, double falsePositives) {
+		long n = Math.max(expected, 1L);
+		double p = Math.min(Math.max(falsePositives, 1e-9), 0.5);
+		long m = (long) Math.ceil(-n*Math.log(p)/(Math.log(2)*Math.log(2)));
+		int words = (int) Math.min((m+63)/64, Integer.MAX_VALUE-8);
+		this.words = new AtomicLongArray(words);
+		this.bits = words*64L;
+		this.hashes = Math.max((int) Math.round((double) bits/n*Math.log(2)), 1);
+	}
+
+	/**
+	 * @param value String to be added
+	 */
+	public void add(String value) {
+		long hash = hash(value);
+		int h1 = (int) hash;
+		int h2 = (int) (hash>>>32) | 1;
+		for(int i = 0; i<hashes; i++) {
+			long bit = Math.floorMod(h1+(long) i*h2, bits);
+			int word = (int) (bit>>>6);
+			long mask = 1L<<bit;
+			long current = words.get(word);
+			while((current & mask)==0 && !words.compareAndSet(word, current, current | mask)) {
+				current = words.get(word);
+			}
+		}
+	}
+
+	/**
+	 * @param value String to be checked
+	 * @return false if the string was surely not added, true if it was maybe added
+	 */
+	public boolean mightContain(String value) {
+		long hash = hash(value);
+		int h1 = (int) hash;
+		int h2 = (int) (hash>>>32) | 1;
+		for(int i = 0; i<hashes; i++) {
+			long bit = Math.floorMod(h1+(long) i*h2, bits);
+			if((words.get((int) (bit>>>6)) & (1L<<bit))==0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return Milliseconds since the epoch when the filter was created
+	 */
+	public long getCreated() {
+		return created;
+	}
+
+	/**
+	 * @return Size of the filter in bits
+	 */
+	public long getBits() {
+		return bits;
+	}
+
+	/**
+	 * 64 bit FNV-1a over the UTF-16 chars of the string, spread with the murmur3 finalizer
+	 * @param value String
+	 * @return Hash of the string
+	 */
+	private static long hash(String value) {
+		long hash = FNV_OFFSET;
+		for(int i = 0; i<value.length(); i++) {
+			char c = value.charAt(i);
+			hash ^= c & 0xff;
+			hash *= FNV_PRIME;
+			hash ^= c>>>8;
+			hash *= FNV_PRIME;
+		}
+		hash ^= hash>>>33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash>>>33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash>>>33;
+		return hash;
+	}
+}
@@ -0,0 +1,233 @@
+package com.juant.roxxy.core;
+
+import java.util.function.Supplier;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlClient;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Circuit breaker for a database, shared by all the verticle instances that use it (see ApiVerticle.getCircuitBreaker).
+ * Outcomes of the last calls are kept in a sliding window, the circuit opens when the failure rate or the slow call rate
+ * reaches its threshold. While it is open queries fail at once without waiting for a pool connection, after the open
+ * timeout a few probe calls are let through (half open) and the circuit closes again if all of them succeed.
+ * The following keys are available:
+ * <ul>
+ * 	<li><b>database.breaker.window</b>: calls in the sliding window (default 20)</li>
+ * 	<li><b>database.breaker.min.calls</b>: calls needed before the rates are evaluated (default 10)</li>
+ * 	<li><b>database.breaker.failure.rate</b>: failure percentage that opens the circuit (default 50)</li>
+ * 	<li><b>database.breaker.slow.rate</b>: slow call percentage that opens the circuit (default 80)</li>
+ * 	<li><b>database.breaker.slow.call</b>: milliseconds after which a call is slow (default 2000)</li>
+ * 	<li><b>database.breaker.open.timeout</b>: milliseconds the circuit stays open before probing (default 10000)</li>
+ * 	<li><b>database.breaker.half.open.calls</b>: probe calls in half open state (default 3)</li>
+ * </ul>
+ * @author Juan Tzun
+ *
+ */
+public class CircuitBreaker implements Shareable {
+
+	/**
+	 * Circuit states
+	 */
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private static final byte FAILED = 1;
+	private static final byte SLOW = 2;
+
+	private final String name;
+	private State state = State.CLOSED;
+
+	//Sliding window of call outcomes (FAILED and SLOW flags)
+	private byte[] outcomes;
+	private int next;
+	private int calls;
+	private int failures;
+	private int slowCalls;
+
+	private int minCalls;
+	private int failureRate;
+	private int slowRate;
+	private long slowCall;
+	private long openTimeout;
+	private int halfOpenCalls;
+
+	private long openedAt;
+	private int probes;
+	private int probeSuccesses;
+
+	//Totals since start
+	private long rejected;
+	private long opened;
+
+	//Calls made and not finished yet, running or waiting for a pool connection
+	private int inFlight;
+
+	/**
+	 * Constructor with parameters.
+	 * @param name Database prefix
+	 * @param config Application config
+	 */
+	public CircuitBreaker(String name, JsonObject config) {
+		this.name = name;
+		this.configure(config);
+	}
+
+	/**
+	 * Reads the database.breaker.* settings. The window starts empty when its size changes.
+	 * @param config Application config
+	 */
+	public synchronized void configure(JsonObject config) {
+		int window = Math.max(config.getInteger("database.breaker.window", 20), 1);
+		if(outcomes==null || outcomes.length!=window) {
+			this.outcomes = new byte[window];
+			this.resetWindow();
+		}
+		this.minCalls = Math.min(config.getInteger("database.breaker.min.calls", 10), window);
+		this.failureRate = config.getInteger("database.breaker.failure.rate", 50);
+		this.slowRate = config.getInteger("database.breaker.slow.rate", 80);
+		this.slowCall = config.getLong("database.breaker.slow.call", 2000L);
+		this.openTimeout = config.getLong("database.breaker.open.timeout", 10000L);
+		this.halfOpenCalls = Math.max(config.getInteger("database.breaker.half.open.calls", 3), 1);
+	}
+
+	/**
+	 * Executes a prepared query if the circuit lets it through, otherwise the handler fails at once
+	 * @param client Pooled client
+	 * @param sql SQL statement
+	 * @param params Statement parameters
+	 * @param handler Called with the result
+	 */
+	public void execute(SqlClient client, String sql, Tuple params, Handler<AsyncResult<RowSet<Row>>> handler) {
+		this.execute(() -> client.preparedQuery(sql).execute(params), handler);
+	}
+
+	/**
+	 * Executes a database call (a batch or a transaction) if the circuit lets it through, otherwise the handler fails at once
+	 * @param call Starts the call
+	 * @param handler Called with the result
+	 */
+	public <T> void execute(Supplier<Future<T>> call, Handler<AsyncResult<T>> handler) {
+		if(!this.tryAcquire()) {
+			handler.handle(Future.failedFuture("Circuit open for "+name));
+			return;
+		}
+		long start = System.currentTimeMillis();
+		call.get().onComplete(result -> {
+			this.record(result.succeeded(), System.currentTimeMillis()-start);
+			handler.handle(result);
+		});
+	}
+
+	/**
+	 * @return true if a call can be made now
+	 */
+	public synchronized boolean tryAcquire() {
+		if(state==State.OPEN && System.currentTimeMillis()-openedAt>=openTimeout) {
+			state = State.HALF_OPEN;
+			probes = 0;
+			probeSuccesses = 0;
+		}
+		if(state==State.CLOSED || (state==State.HALF_OPEN && probes<halfOpenCalls)) {
+			if(state==State.HALF_OPEN) {
+				probes++;
+			}
+			inFlight++;
+			return true;
+		}
+		rejected++;
+		return false;
+	}
+
+	/**
+	 * Records the outcome of a call made after tryAcquire
+	 * @param succeeded true if the call succeeded
+	 * @param duration Call duration in milliseconds
+	 */
+	public synchronized void record(boolean succeeded, long duration) {
+		byte outcome = (byte) ((succeeded ? 0 : FAILED) | (duration>=slowCall ? SLOW : 0));
+		inFlight--;
+
+		if(state==State.HALF_OPEN) {
+			if(outcome!=0) {
+				this.open();
+			} else if(++probeSuccesses>=halfOpenCalls) {
+				state = State.CLOSED;
+				this.resetWindow();
+				System.out.println("Circuit closed for "+name+" database");
+			}
+			return;
+		}
+
+		if(calls==outcomes.length) {
+			this.count(outcomes[next], -1);
+		} else {
+			calls++;
+		}
+		outcomes[next] = outcome;
+		this.count(outcome, 1);
+		next = (next+1)%outcomes.length;
+
+		if(state==State.CLOSED && calls>=minCalls
+				&& (failures*100>=failureRate*calls || slowCalls*100>=slowRate*calls)) {
+			this.open();
+		}
+	}
+
+	/**
+	 * @return Current state
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return Calls made through the circuit that did not finish yet (see Diagnostics)
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * @return State, window rates and totals of the circuit
+	 */
+	public synchronized JsonObject getMetrics() {
+		return new JsonObject()
+				.put("state", state.name())
+				.put("calls", calls)
+				.put("failureRate", calls>0 ? failures*100/calls : 0)
+				.put("slowCallRate", calls>0 ? slowCalls*100/calls : 0)
+				.put("rejected", rejected)
+				.put("opened", opened);
+	}
+
+	private void open() {
+		state = State.OPEN;
+		openedAt = System.currentTimeMillis();
+		opened++;
+		System.out.println("Circuit open for "+name+" database");
+	}
+
+	private void count(byte outcome, int delta) {
+		if((outcome & FAILED)!=0) {
+			failures += delta;
+		}
+		if((outcome & SLOW)!=0) {
+			slowCalls += delta;
+		}
+	}
+
+	private void resetWindow() {
+		next = 0;
+		calls = 0;
+		failures = 0;
+		slowCalls = 0;
+	}
+}
@@ -0,0 +1,253 @@
+package com.juant.roxxy.core;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.PreparedQuery;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlClient;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.SqlResult;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Per route deadlines. The handler returned by route stores the deadline of the request in the routing context and ends
+ * the response with the timeout handler when it passes. Queries and event bus requests of the route are sent with
+ * query, transaction and deliveryOptions, so once the deadline passes the remaining queries of the chain are not issued and
+ * late results are dropped. The following keys are available, in milliseconds:
+ * <ul>
+ * 	<li><b>deadline.default</b>: deadline of the routes without their own key (default 5000)</li>
+ * 	<li><b>deadline.&lt;route&gt;</b>: deadline of a route, for example deadline.make-payment</li>
+ * </ul>
+ * Event bus requests carry the deadline in the deadline header, consumers check it with isExpired(Message).
+ * @author Juan Tzun
+ *
+ */
+public class Deadline {
+
+	/**
+	 * Routing context key and event bus header with the deadline in epoch milliseconds
+	 */
+	public static final String HEADER = "deadline";
+
+	private final Handler<RoutingContext> timeoutHandler;
+	private JsonObject config;
+
+	/**
+	 * Constructor with parameters.
+	 * @param config Application config
+	 * @param timeoutHandler Ends the response of the requests whose deadline passed
+	 */
+	public Deadline(JsonObject config, Handler<RoutingContext> timeoutHandler) {
+		this.timeoutHandler = timeoutHandler;
+		this.configure(config);
+	}
+
+	/**
+	 * Reads the deadline.* settings, used by the requests received from now on
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		this.config = config;
+	}
+
+	/**
+	 * @param route Route name used in the config key, for example make-payment
+	 * @return Handler to be added before the route handler
+	 */
+	public Handler<RoutingContext> route(String route) {
+		return routingContext -> {
+			long timeout = config.getLong("deadline."+route, config.getLong("deadline.default", 5000L));
+			routingContext.put(HEADER, System.currentTimeMillis()+timeout);
+
+			long timerId = routingContext.vertx().setTimer(timeout, timer -> {
+				if(!routingContext.response().ended()) {
+					timeoutHandler.handle(routingContext);
+				}
+			});
+			routingContext.addEndHandler(end -> routingContext.vertx().cancelTimer(timerId));
+			routingContext.next();
+		};
+	}
+
+	/**
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 * @return true if the route has a deadline and it passed
+	 */
+	public static boolean isExpired(RoutingContext routingContext) {
+		Long deadline = routingContext.get(HEADER);
+		return deadline!=null && System.currentTimeMillis()>=deadline;
+	}
+
+	/**
+	 * @param message Event bus request
+	 * @return true if the request has a deadline and it passed
+	 */
+	public static boolean isExpired(Message<?> message) {
+		String deadline = message.headers().get(HEADER);
+		return deadline!=null && System.currentTimeMillis()>=Long.parseLong(deadline);
+	}
+
+	/**
+	 * Options for an event bus request, it times out and carries the deadline of the routing context
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 * @return Delivery options
+	 */
+	public static DeliveryOptions deliveryOptions(RoutingContext routingContext) {
+		DeliveryOptions options = new DeliveryOptions();
+		Long deadline = routingContext.get(HEADER);
+		if(deadline!=null) {
+			options.setSendTimeout(Math.max(deadline-System.currentTimeMillis(), 1L))
+				.addHeader(HEADER, String.valueOf(deadline));
+		}
+		return options;
+	}
+
+	/**
+	 * Prepared query bound to the deadline of a route
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 * @param breaker Circuit breaker of the database
+	 * @param client Pooled client
+	 * @param sql SQL statement
+	 * @return Query to be executed
+	 */
+	public static RowQuery query(RoutingContext routingContext, CircuitBreaker breaker, SqlClient client, String sql) {
+		return new RowQuery(breaker, client.preparedQuery(sql), () -> isExpired(routingContext));
+	}
+
+	/**
+	 * Prepared query bound to the deadline of an event bus request, late results are dropped because the sender
+	 * already failed with a timeout
+	 * @param message Event bus request
+	 * @param breaker Circuit breaker of the database
+	 * @param client Pooled client
+	 * @param sql SQL statement
+	 * @return Query to be executed
+	 */
+	public static RowQuery query(Message<?> message, CircuitBreaker breaker, SqlClient client, String sql) {
+		return new RowQuery(breaker, client.preparedQuery(sql), () -> isExpired(message));
+	}
+
+	/**
+	 * Executes a transaction bound to the deadline of a route through the circuit breaker of the database. The transaction
+	 * is not started once the deadline passed and it is rolled back if the deadline passes before the commit, the handler is
+	 * not called in both cases because the response was already ended by the timeout handler.
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 * @param breaker Circuit breaker of the database
+	 * @param pool Pool of the database
+	 * @param work Queries of the transaction, committed when the returned future succeeds
+	 * @param handler Called with the result of the transaction
+	 */
+	public static <T> void transaction(RoutingContext routingContext, CircuitBreaker breaker, Pool pool,
+			Function<SqlConnection, Future<T>> work, Handler<AsyncResult<T>> handler) {
+		transaction(routingContext, breaker, pool, work, handler, null);
+	}
+
+	/**
+	 * Executes a transaction bound to the deadline of a route, like transaction, and then calls the completion handler
+	 * whether the deadline passed or not: once the transaction was committed or rolled back, or at once if it was not
+	 * started. The timeout handler may end the response while the commit is in flight, so resources that must be held
+	 * until the transaction finishes, like locks, are released by the completion handler instead of on response end.
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 * @param breaker Circuit breaker of the database
+	 * @param pool Pool of the database
+	 * @param work Queries of the transaction, committed when the returned future succeeds
+	 * @param handler Called with the result of the transaction if the deadline did not pass
+	 * @param completionHandler Always called with the result of the transaction, before the handler; null for none
+	 */
+	public static <T> void transaction(RoutingContext routingContext, CircuitBreaker breaker, Pool pool,
+			Function<SqlConnection, Future<T>> work, Handler<AsyncResult<T>> handler, Handler<AsyncResult<T>> completionHandler) {
+		if(isExpired(routingContext)) {
+			if(completionHandler!=null) {
+				completionHandler.handle(Future.failedFuture("Deadline passed"));
+			}
+			return;
+		}
+		breaker.execute(() -> pool.withTransaction(connection -> work.apply(connection)
+				.compose(result -> isExpired(routingContext) ? Future.failedFuture("Deadline passed") : Future.succeededFuture(result))),
+			result -> {
+				if(completionHandler!=null) {
+					completionHandler.handle(result);
+				}
+				if(!isExpired(routingContext)) {
+					handler.handle(result);
+				}
+			});
+	}
+
+	/**
+	 * Prepared query that is not issued once the deadline passed, executed through the circuit breaker of the database.
+	 * The handler is not called if the deadline passes before the result arrives, the response was already ended by the
+	 * timeout handler.
+	 * @param <T> Result type
+	 */
+	public static class Query<T> {
+		private final CircuitBreaker breaker;
+		private final PreparedQuery<T> query;
+		private final BooleanSupplier expired;
+
+		private Query(CircuitBreaker breaker, PreparedQuery<T> query, BooleanSupplier expired) {
+			this.breaker = breaker;
+			this.query = query;
+			this.expired = expired;
+		}
+
+		/**
+		 * @param params Statement parameters
+		 * @param handler Called with the result
+		 */
+		public void execute(Tuple params, Handler<AsyncResult<T>> handler) {
+			if(expired.getAsBoolean()) {
+				return;
+			}
+			breaker.execute(() -> query.execute(params), result -> {
+				if(!expired.getAsBoolean()) {
+					handler.handle(result);
+				}
+			});
+		}
+
+		/**
+		 * @param handler Called with the result
+		 */
+		public void execute(Handler<AsyncResult<T>> handler) {
+			this.execute(Tuple.tuple(), handler);
+		}
+	}
+
+	/**
+	 * Query with a row set result, its rows can be mapped or collected as they are decoded (see Rows)
+	 */
+	public static class RowQuery extends Query<RowSet<Row>> {
+
+		private RowQuery(CircuitBreaker breaker, PreparedQuery<RowSet<Row>> query, BooleanSupplier expired) {
+			super(breaker, query, expired);
+		}
+
+		/**
+		 * @param mapper Maps every row
+		 * @return Query with the mapped rows
+		 */
+		public <U> Query<RowSet<U>> mapping(Function<Row, U> mapper) {
+			return new Query<>(super.breaker, super.query.mapping(mapper), super.expired);
+		}
+
+		/**
+		 * @param collector Collects the rows
+		 * @return Query with the collected value
+		 */
+		public <R> Query<SqlResult<R>> collecting(Collector<Row, ?, R> collector) {
+			return new Query<>(super.breaker, super.query.collecting(collector), super.expired);
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package com.juant.roxxy.core;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * Runtime diagnostics shared by all the API verticles of the Vert.x instance (see ApiVerticle.getDiagnostics), available
+ * on GET /diagnostics:
+ * <ul>
+ * 	<li><b>Event loop lag</b>: every API verticle instance schedules a timer on its event loop every
+ * 	diagnostics.lag.interval milliseconds, the delay of the timer past its due time is recorded by event loop thread</li>
+ * 	<li><b>Blocked threads</b>: a watchdog thread outside Vert.x checks every diagnostics.blocked.check.interval
+ * 	milliseconds when each event loop last ran its timer, an event loop that did not run it for diagnostics.blocked.threshold
+ * 	milliseconds is reported once with its stack trace, the last diagnostics.blocked.reports reports are kept</li>
+ * 	<li><b>Pool acquire wait</b>: every diagnostics.pool.probe.interval milliseconds every pool is asked for a connection,
+ * 	which is returned at once, so the recorded wait is the time a query would wait in the pool queue at that moment</li>
+ * 	<li><b>Pool gauges</b>: calls in flight through the circuit breaker of every pool, split in in use (up to the pool size
+ * 	of all the instances) and queued</li>
+ * </ul>
+ * The following keys are available:
+ * <ul>
+ * 	<li><b>diagnostics.lag.interval</b>: milliseconds between event loop lag samples (default 100)</li>
+ * 	<li><b>diagnostics.blocked.check.interval</b>: milliseconds between blocked event loop checks (default 1000)</li>
+ * 	<li><b>diagnostics.blocked.threshold</b>: milliseconds an event loop can run a task before it is reported (default 2000)</li>
+ * 	<li><b>diagnostics.blocked.reports</b>: blocked thread reports kept (default 20)</li>
+ * 	<li><b>diagnostics.pool.probe.interval</b>: milliseconds between pool acquire wait probes (default 1000)</li>
+ * </ul>
+ * @author Juan Tzun
+ *
+ */
+public class Diagnostics implements Shareable {
+
+	//Sampled event loops and pools by name
+	private final Map<String, EventLoop> eventLoops = new LinkedHashMap<>();
+	private final Map<String, Pool> pools = new LinkedHashMap<>();
+
+	//Last blocked thread reports, oldest first
+	private final Deque<JsonObject> blockedThreads = new ArrayDeque<>();
+
+	private long lagInterval;
+	private long blockedCheckInterval;
+	private long blockedThreshold;
+	private int blockedReports;
+	private long poolProbeInterval;
+
+	private Timer watchdog;
+
+	/**
+	 * Constructor with parameters. Starts the watchdog thread.
+	 * @param config Application config
+	 */
+	public Diagnostics(JsonObject config) {
+		this.configure(config);
+	}
+
+	/**
+	 * Reads the diagnostics.* settings, the intervals are used from the next sample
+	 * @param config Application config
+	 */
+	public synchronized void configure(JsonObject config) {
+		long previousCheckInterval = blockedCheckInterval;
+		this.lagInterval = Math.max(config.getLong("diagnostics.lag.interval", 100L), 1L);
+		this.blockedCheckInterval = Math.max(config.getLong("diagnostics.blocked.check.interval", 1000L), 1L);
+		this.blockedThreshold = Math.max(config.getLong("diagnostics.blocked.threshold", 2000L), 1L);
+		this.blockedReports = Math.max(config.getInteger("diagnostics.blocked.reports", 20), 0);
+		this.poolProbeInterval = Math.max(config.getLong("diagnostics.pool.probe.interval", 1000L), 1L);
+
+		while(blockedThreads.size()>blockedReports) {
+			blockedThreads.removeFirst();
+		}
+		if(watchdog==null || previousCheckInterval!=blockedCheckInterval) {
+			this.startWatchdog();
+		}
+	}
+
+	public synchronized long getLagInterval() {
+		return lagInterval;
+	}
+
+	public synchronized long getPoolProbeInterval() {
+		return poolProbeInterval;
+	}
+
+	/**
+	 * Records a lag sample, called on the event loop
+	 * @param lag Milliseconds the lag timer ran after its due time
+	 */
+	public synchronized void recordLag(long lag) {
+		Thread thread = Thread.currentThread();
+		EventLoop eventLoop = eventLoops.computeIfAbsent(thread.getName(), name -> new EventLoop(thread));
+		eventLoop.lag.record(lag);
+		eventLoop.lastRun = System.currentTimeMillis();
+		eventLoop.blocked = false;
+	}
+
+	/**
+	 * Sets the connections of a pool in all the instances, called when the pool is created or replaced
+	 * @param name Pool name
+	 * @param breaker Circuit breaker of the pool
+	 * @param size Pool size of every instance
+	 * @param instances Instances with their own pool
+	 */
+	public synchronized void setPool(String name, CircuitBreaker breaker, int size, int instances) {
+		Pool pool = pools.computeIfAbsent(name, key -> new Pool(breaker));
+		pool.size = size*instances;
+	}
+
+	/**
+	 * Records a pool acquire wait probe, failed probes are only counted
+	 * @param name Pool name
+	 * @param wait Milliseconds until the pool gave a connection
+	 * @param succeeded false if the pool did not give a connection
+	 */
+	public synchronized void recordAcquire(String name, long wait, boolean succeeded) {
+		Pool pool = pools.get(name);
+		if(pool==null) {
+			return;
+		}
+		if(succeeded) {
+			pool.acquireWait.record(wait);
+		} else {
+			pool.failedProbes++;
+		}
+	}
+
+	/**
+	 * @return {eventLoops: {thread: {lag, blocked}}, pools: {name: {size, inUse, queued, acquireWait, failedProbes}},
+	 * blockedThreads: [{thread, time, blockedFor, stackTrace}]}
+	 */
+	public synchronized JsonObject toJson() {
+		JsonObject eventLoopsJson = new JsonObject();
+		for(Map.Entry<String, EventLoop> eventLoop : eventLoops.entrySet()) {
+			eventLoopsJson.put(eventLoop.getKey(), new JsonObject()
+					.put("lag", eventLoop.getValue().lag.toJson())
+					.put("blocked", eventLoop.getValue().blockedCount));
+		}
+
+		JsonObject poolsJson = new JsonObject();
+		for(Map.Entry<String, Pool> entry : pools.entrySet()) {
+			Pool pool = entry.getValue();
+			int inFlight = pool.breaker.getInFlight();
+			poolsJson.put(entry.getKey(), new JsonObject()
+					.put("size", pool.size)
+					.put("inUse", Math.min(inFlight, pool.size))
+					.put("queued", Math.max(inFlight-pool.size, 0))
+					.put("acquireWait", pool.acquireWait.toJson())
+					.put("failedProbes", pool.failedProbes));
+		}
+
+		return new JsonObject()
+				.put("eventLoops", eventLoopsJson)
+				.put("pools", poolsJson)
+				.put("blockedThreads", new JsonArray(new ArrayList<>(blockedThreads)));
+	}
+
+	/**
+	 * Starts the watchdog, or restarts it with a new check interval. It runs on a daemon thread so it keeps checking while
+	 * the event loops are blocked and does not keep the process alive.
+	 */
+	private void startWatchdog() {
+		if(watchdog!=null) {
+			watchdog.cancel();
+		}
+		watchdog = new Timer("roxxy-blocked-thread-checker", true);
+		watchdog.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				checkBlocked();
+			}
+		}, blockedCheckInterval, blockedCheckInterval);
+	}
+
+	/**
+	 * Reports the event loops that did not run their lag timer for the threshold, once for every blocked period
+	 */
+	private synchronized void checkBlocked() {
+		long now = System.currentTimeMillis();
+		for(Map.Entry<String, EventLoop> entry : eventLoops.entrySet()) {
+			EventLoop eventLoop = entry.getValue();
+			long blockedFor = now-eventLoop.lastRun-lagInterval;
+			if(eventLoop.blocked || blockedFor<blockedThreshold) {
+				continue;
+			}
+			eventLoop.blocked = true;
+			eventLoop.blockedCount++;
+
+			JsonArray stackTrace = new JsonArray();
+			for(StackTraceElement element : eventLoop.thread.getStackTrace()) {
+				stackTrace.add(element.toString());
+			}
+			blockedThreads.addLast(new JsonObject()
+					.put("thread", entry.getKey())
+					.put("time", Instant.ofEpochMilli(now).toString())
+					.put("blockedFor", blockedFor)
+					.put("stackTrace", stackTrace));
+			while(blockedThreads.size()>blockedReports) {
+				blockedThreads.removeFirst();
+			}
+			System.out.println("Thread "+entry.getKey()+" blocked for "+blockedFor+" ms, see GET /diagnostics");
+		}
+	}
+
+	/**
+	 * Lag samples of an event loop
+	 */
+	private static class EventLoop {
+		private final Thread thread;
+		private final Histogram lag = new Histogram();
+		private long lastRun = System.currentTimeMillis();
+		private boolean blocked;
+		private long blockedCount;
+
+		private EventLoop(Thread thread) {
+			this.thread = thread;
+		}
+	}
+
+	/**
+	 * Acquire wait probes and size of a pool
+	 */
+	private static class Pool {
+		private final CircuitBreaker breaker;
+		private final Histogram acquireWait = new Histogram();
+		private int size;
+		private long failedProbes;
+
+		private Pool(CircuitBreaker breaker) {
+			this.breaker = breaker;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.juant.roxxy.core;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Histogram of durations in milliseconds with fixed buckets, from 1 ms to 5 s and an overflow bucket. Percentiles are
+ * reported as the upper bound of their bucket. Values can be recorded from any thread.
+ * @author Juan Tzun
+ *
+ */
+public class Histogram {
+
+	private static final long[] BOUNDS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000};
+
+	private final long[] counts = new long[BOUNDS.length+1];
+	private long count;
+	private long sum;
+	private long max;
+	private long last;
+
+	/**
+	 * @param value Duration in milliseconds
+	 */
+	public synchronized void record(long value) {
+		int bucket = 0;
+		while(bucket<BOUNDS.length && value>BOUNDS[bucket]) {
+			bucket++;
+		}
+		counts[bucket]++;
+		count++;
+		sum += value;
+		max = Math.max(max, value);
+		last = value;
+	}
+
+	/**
+	 * @return {count, last, mean, max, p50, p90, p99, buckets: {"<=1": n, ..., ">5000": n}}
+	 */
+	public synchronized JsonObject toJson() {
+		JsonObject buckets = new JsonObject();
+		for(int i = 0; i<BOUNDS.length; i++) {
+			buckets.put("<="+BOUNDS[i], counts[i]);
+		}
+		buckets.put(">"+BOUNDS[BOUNDS.length-1], counts[BOUNDS.length]);
+
+		return new JsonObject()
+				.put("count", count)
+				.put("last", last)
+				.put("mean", count>0 ? sum/count : 0)
+				.put("max", max)
+				.put("p50", this.percentile(50))
+				.put("p90", this.percentile(90))
+				.put("p99", this.percentile(99))
+				.put("buckets", buckets);
+	}
+
+	/**
+	 * @param percent Percentile from 1 to 100
+	 * @return Upper bound of the bucket of the percentile, the maximum for the overflow bucket
+	 */
+	private long percentile(int percent) {
+		if(count==0) {
+			return 0;
+		}
+		long rank = (count*percent+99)/100;
+		long seen = 0;
+		for(int i = 0; i<BOUNDS.length; i++) {
+			seen += counts[i];
+			if(seen>=rank) {
+				return Math.min(BOUNDS[i], max);
+			}
+		}
+		return max;
+	}
+}
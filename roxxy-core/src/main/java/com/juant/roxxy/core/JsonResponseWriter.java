@@ -0,0 +1,52 @@
+package com.juant.roxxy.core;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Ends API responses with a compact JSON body. The HTTP server compresses responses with gzip or deflate
+ * according to Accept-Encoding (see ServerProfile), bodies smaller than http.compression.min.size bytes
+ * (default 1024) are sent without compression because they would not get smaller.
+ * @author Juan Tzun
+ *
+ */
+public class JsonResponseWriter {
+
+	private int compressionMinSize;
+
+	/**
+	 * Constructor with parameters.
+	 * @param config Application config
+	 */
+	public JsonResponseWriter(JsonObject config) {
+		this.configure(config);
+	}
+
+	/**
+	 * Reads http.compression.min.size
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		this.compressionMinSize = config.getInteger("http.compression.min.size", 1024);
+	}
+
+	/**
+	 * Encodes the object and ends the response with it. Responses already ended, for example by a deadline
+	 * (see Deadline), are left as they are.
+	 * @param response Response with status code and headers already set
+	 * @param object Load to be encoded by Json
+	 */
+	public void end(HttpServerResponse response, Object object) {
+		if(response.ended() || response.closed()) {
+			return;
+		}
+		Buffer body = Json.encodeToBuffer(object);
+		if(body.length()<compressionMinSize) {
+			response.putHeader(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+		}
+		response.end(body);
+	}
+}
@@ -0,0 +1,154 @@
+package com.juant.roxxy.core;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Lock;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * Asynchronous mutex by key, shared by all the instances of an API (see ApiVerticle.getKeyedMutex). Tasks of the same key
+ * run one after the other in arrival order while tasks of different keys run at the same time. Keys are spread over
+ * stripes with their own monitor, so only keys of the same stripe wait for each other to take or release a lock, and a
+ * key only takes memory while it is locked. The lock is in memory, it does not serialize tasks of other processes.
+ * The following keys are available, with the prefix of the mutex (for example neivor.order.lock.queue):
+ * <ul>
+ * 	<li><b>lock.stripes</b>: stripes of the keys, read on creation (default 64)</li>
+ * 	<li><b>lock.queue</b>: tasks of a key waiting for the lock, more are rejected (default 10)</li>
+ * </ul>
+ * @author Juan Tzun
+ *
+ */
+public class KeyedMutex implements Shareable {
+
+	private final String prefix;
+	private final Stripe[] stripes;
+	private volatile int maxWaiters;
+
+	/**
+	 * Constructor with parameters.
+	 * @param prefix Prefix of the config keys of the mutex, for example neivor.order
+	 * @param config Application config
+	 */
+	public KeyedMutex(String prefix, JsonObject config) {
+		this.prefix = prefix+".";
+		this.stripes = new Stripe[Math.max(config.getInteger(this.prefix+"lock.stripes", 64), 1)];
+		for(int i = 0; i<stripes.length; i++) {
+			stripes[i] = new Stripe();
+		}
+		this.configure(config);
+	}
+
+	/**
+	 * Reads the lock.queue setting, used for the next tasks
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		this.maxWaiters = Math.max(config.getInteger(prefix+"lock.queue", 10), 0);
+	}
+
+	/**
+	 * Takes the lock of a key, at once if it is free or once the tasks before release it. The handler runs on the context
+	 * of the caller and the task must release the lock when it finishes.
+	 * @param key Key of the task, for example the department number
+	 * @param handler Called with the lock, failed without waiting if lock.queue tasks of the key are already waiting
+	 */
+	public void acquire(String key, Handler<AsyncResult<Lock>> handler) {
+		Stripe stripe = this.getStripe(key);
+		boolean acquired;
+		synchronized(stripe) {
+			Deque<Waiter> waiters = stripe.locked.get(key);
+			acquired = waiters==null;
+			if(acquired) {
+				stripe.locked.put(key, new ArrayDeque<>());
+			} else if(waiters.size()<maxWaiters) {
+				waiters.addLast(new Waiter(Vertx.currentContext(), handler));
+				return;
+			}
+		}
+		if(acquired) {
+			handler.handle(Future.succeededFuture(new KeyLock(key)));
+		} else {
+			handler.handle(Future.failedFuture("Too many tasks waiting for "+key));
+		}
+	}
+
+	/**
+	 * Hands the lock of a key to the next task, or frees it if no task is waiting
+	 * @param key Key of the lock
+	 */
+	private void release(String key) {
+		Stripe stripe = this.getStripe(key);
+		Waiter next;
+		synchronized(stripe) {
+			Deque<Waiter> waiters = stripe.locked.get(key);
+			next = waiters!=null ? waiters.pollFirst() : null;
+			if(next==null) {
+				stripe.locked.remove(key);
+				return;
+			}
+		}
+		Lock lock = new KeyLock(key);
+		if(next.context!=null) {
+			next.context.runOnContext(v -> next.handler.handle(Future.succeededFuture(lock)));
+		} else {
+			next.handler.handle(Future.succeededFuture(lock));
+		}
+	}
+
+	/**
+	 * @param key Key of a lock
+	 * @return Stripe of the key
+	 */
+	private Stripe getStripe(String key) {
+		return stripes[Math.floorMod(key.hashCode(), stripes.length)];
+	}
+
+	/**
+	 * Locked keys of a stripe with the tasks waiting for them, guarded by the stripe
+	 */
+	private static class Stripe {
+		private final Map<String, Deque<Waiter>> locked = new HashMap<>();
+	}
+
+	/**
+	 * Task waiting for a lock
+	 */
+	private static class Waiter {
+		private final Context context;
+		private final Handler<AsyncResult<Lock>> handler;
+
+		private Waiter(Context context, Handler<AsyncResult<Lock>> handler) {
+			this.context = context;
+			this.handler = handler;
+		}
+	}
+
+	/**
+	 * Lock of a key held by a task, releasing it again has no effect
+	 */
+	private class KeyLock implements Lock {
+		private final String key;
+		private boolean released;
+
+		private KeyLock(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public synchronized void release() {
+			if(!released) {
+				released = true;
+				KeyedMutex.this.release(key);
+			}
+		}
+	}
+}
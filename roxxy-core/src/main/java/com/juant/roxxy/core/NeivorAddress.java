@@ -0,0 +1,62 @@
+package com.juant.roxxy.core;
+
+/**
+ * Event bus addresses served by the Neivor API verticle. Roxxy uses them to read and update
+ * Neivor payment orders without connecting to the Neivor database.
+ * Failures are replied with the custom error code as failure code and the description as message
+ * (for example 501 / ordenes_pago or 201 / ORDEN DE PAGO DESCONOCIDA).
+ * Amounts (valorPagar, importeAdeudado, montoRevertido) are long cents (see Money).
+ * Requests may carry the deadline of the HTTP request (see Deadline), queries are not issued once it passes.
+ * @author Juan Tzun
+ *
+ */
+public final class NeivorAddress {
+
+	/**
+	 * Payment order by code. Request: {codigo}. Reply: {codigo, valorPagar, pagado}
+	 */
+	public static final String ORDEN_PAGO_CONSULTAR = "neivor.orden-pago.consultar";
+
+	/**
+	 * Payment order by code, reserved for a payment. Request: {codigo}. Reply: {codigo, valorPagar, pagado}, like
+	 * ORDEN_PAGO_CONSULTAR. The reservation waits for an expiry in progress and keeps the payment order from expiring for
+	 * neivor.expiry.reservation milliseconds (see PaymentOrderExpiry), so the payment must be saved before then.
+	 */
+	public static final String ORDEN_PAGO_RESERVAR = "neivor.orden-pago.reservar";
+
+	/**
+	 * Payment order services with their fees. Request: {codigo}.
+	 * Reply: {servicios: [{id, importeAdeudado, cuotas: [Pago]}]}
+	 */
+	public static final String ORDEN_PAGO_SERVICIOS = "neivor.orden-pago.servicios";
+
+	/**
+	 * Payment order state updates, applied in order in a single batch, with the reversions of the reverted payments.
+	 * Request: {ordenes: [{codigo, pagado, reversion: {idReversion, fechaReversion, montoRevertido}}]}, reversion only for
+	 * reversions, idReversion is the Roxxy reversion id. Reply: {reversiones: [{idReversion, idReversionNeivor}],
+	 * desconocidas: [codigo]}, desconocidas has the codes of the payment orders that do not exist, they are not updated.
+	 * The state is set and not toggled and a reversion is created once by Roxxy reversion id, so a request can be sent
+	 * again after a failure or a timeout.
+	 */
+	public static final String ORDEN_PAGO_ESTADO = "neivor.orden-pago.estado";
+
+	/**
+	 * Payment order state changes, published after every state update. Event: {codigo, pagado, departamento}
+	 */
+	public static final String ORDEN_PAGO_CAMBIO = "neivor.orden-pago.cambio";
+
+	/**
+	 * Paid payment orders by code, in code order, used by the reconciliation. Request: {desde, limite}, codes from desde.
+	 * Reply: {ordenes: [{codigo, valorPagar}]}
+	 */
+	public static final String ORDENES_PAGO_PAGADAS = "neivor.ordenes-pago.pagadas";
+
+	/**
+	 * Reversions by id, in id order, used by the reconciliation. Request: {desde, limite}, ids from desde.
+	 * Reply: {reversiones: [{idReversion, fechaReversion, ordenPago, montoRevertido}]}
+	 */
+	public static final String REVERSIONES = "neivor.reversiones";
+
+	private NeivorAddress() {
+	}
+}
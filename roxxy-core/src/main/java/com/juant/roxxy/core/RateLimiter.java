@@ -0,0 +1,134 @@
+package com.juant.roxxy.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * Token bucket rate limits by entity (entidad header), shared by all the instances of an API (see ApiVerticle.getRateLimiter).
+ * Every bucket is a single atomic theoretical arrival time updated with compare and set, so requests do not lock
+ * or allocate once the bucket of their entity exists. The following keys are available, with the API prefix
+ * (for example roxxy.rate.limit):
+ * <ul>
+ * 	<li><b>rate.limit</b>: requests per second of every entity (default 50, 0 for no limit)</li>
+ * 	<li><b>rate.burst</b>: requests an entity can send at once (default 100)</li>
+ * 	<li><b>rate.entidades</b>: limits of specific entities, for example {"BANCO1": {"limit": 200, "burst": 400}}</li>
+ * 	<li><b>rate.max.entidades</b>: entities with their own bucket besides rate.entidades, the rest share one bucket (default 1000)</li>
+ * </ul>
+ * @author Juan Tzun
+ *
+ */
+public class RateLimiter implements Shareable {
+
+	private volatile Limits limits;
+	private final String prefix;
+
+	/**
+	 * Constructor with parameters.
+	 * @param prefix Prefix of the config keys of the API (roxxy or neivor)
+	 * @param config Application config
+	 */
+	public RateLimiter(String prefix, JsonObject config) {
+		this.prefix = prefix+".";
+		this.configure(config);
+	}
+
+	/**
+	 * Reads the rate.* settings. Buckets are created again with the new limits.
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		this.limits = new Limits(config, prefix);
+	}
+
+	/**
+	 * Takes a token from the bucket of the entity
+	 * @param entidad Entity of the request
+	 * @return true if the request is allowed, false if the entity exceeded its limit
+	 */
+	public boolean tryAcquire(String entidad) {
+		return limits.getBucket(entidad).tryAcquire(System.nanoTime());
+	}
+
+	/**
+	 * Limits read from the config and the buckets created with them, replaced as a whole on configure
+	 */
+	private static class Limits {
+		private final int limit;
+		private final int burst;
+		private final int maxEntidades;
+		private final Map<String, Bucket> entidades = new HashMap<>();
+		private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+		private final Bucket others;
+
+		private Limits(JsonObject config, String prefix) {
+			this.limit = config.getInteger(prefix+"rate.limit", 50);
+			this.burst = config.getInteger(prefix+"rate.burst", 100);
+			this.maxEntidades = config.getInteger(prefix+"rate.max.entidades", 1000);
+			this.others = new Bucket(limit, burst);
+			JsonObject configured = config.getJsonObject(prefix+"rate.entidades", new JsonObject());
+			for(String entidad : configured.fieldNames()) {
+				JsonObject entidadLimits = configured.getJsonObject(entidad);
+				int entidadLimit = entidadLimits.getInteger("limit", 0);
+				entidades.put(entidad, new Bucket(entidadLimit, entidadLimits.getInteger("burst", entidadLimit)));
+			}
+		}
+
+		/**
+		 * @param entidad Entity of the request
+		 * @return Bucket for the entity, or the shared bucket when there are too many entities
+		 */
+		private Bucket getBucket(String entidad) {
+			Bucket bucket = entidades.get(entidad);
+			if(bucket==null) {
+				bucket = buckets.get(entidad);
+			}
+			if(bucket==null) {
+				//Entities beyond the maximum share one bucket, without looking up the config
+				if(buckets.size()>=maxEntidades) {
+					return others;
+				}
+				bucket = buckets.computeIfAbsent(entidad, key -> new Bucket(limit, burst));
+			}
+			return bucket;
+		}
+	}
+
+	/**
+	 * Token bucket as a generic cell rate algorithm: a request is allowed if the theoretical arrival time after taking
+	 * its token is at most burst intervals ahead of now
+	 */
+	private static class Bucket {
+		private final long interval;
+		private final long tolerance;
+		private final AtomicLong arrival;
+
+		private Bucket(int limit, int burst) {
+			this.interval = limit>0 ? TimeUnit.SECONDS.toNanos(1)/limit : 0L;
+			this.tolerance = interval*Math.max(burst, 1);
+			this.arrival = new AtomicLong(System.nanoTime());
+		}
+
+		private boolean tryAcquire(long now) {
+			if(interval==0L) {
+				return true;
+			}
+			while(true) {
+				long current = arrival.get();
+				long next = (current-now>0 ? current : now)+interval;
+				if(next-now>tolerance) {
+					return false;
+				}
+				if(arrival.compareAndSet(current, next)) {
+					return true;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.juant.roxxy.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.jackson.DatabindCodec;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.BodyHandler;
+
+/**
+ * Reads request bodies into typed request objects (see com.juant.roxxy.request) in one streaming pass over the body bytes,
+ * without building a JsonObject or a String first. Unknown fields are ignored.
+ * The body handler rejects bodies bigger than http.body.limit bytes (default 16384) as soon as Content-Length
+ * or the received bytes exceed it, failing the routing context with status 413.
+ * @author Juan Tzun
+ *
+ */
+public class RequestReader {
+
+	private static final ClassValue<ObjectReader> READERS = new ClassValue<ObjectReader>() {
+		@Override
+		protected ObjectReader computeValue(Class<?> type) {
+			return DatabindCodec.mapper().readerFor(type).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+		}
+	};
+
+	private final BodyHandler bodyHandler;
+
+	/**
+	 * Constructor with parameters.
+	 * @param config Application config
+	 */
+	public RequestReader(JsonObject config) {
+		this.bodyHandler = BodyHandler.create().setHandleFileUploads(false);
+		this.configure(config);
+	}
+
+	/**
+	 * Reads http.body.limit
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		this.bodyHandler.setBodyLimit(config.getLong("http.body.limit", 16384L));
+	}
+
+	/**
+	 * @return Body handler with the configured limit, to be added before the routes that read bodies
+	 */
+	public BodyHandler getBodyHandler() {
+		return bodyHandler;
+	}
+
+	/**
+	 * Reads the request body
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 * @param type Request class
+	 * @return Request object, null if the body is empty or it is not valid for the request class
+	 */
+	public <T> T read(RoutingContext routingContext, Class<T> type) {
+		Buffer body = routingContext.getBody();
+		if(body==null || body.length()==0) {
+			return null;
+		}
+		try (InputStream input = new ByteBufInputStream(body.getByteBuf())) {
+			return READERS.get(type).readValue(input);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
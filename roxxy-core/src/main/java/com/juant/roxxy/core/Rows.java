@@ -0,0 +1,49 @@
+package com.juant.roxxy.core;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.sqlclient.Row;
+
+/**
+ * Row collectors for PreparedQuery.collecting and Deadline.RowQuery.collecting. Rows are mapped as they are decoded,
+ * so the result is built without keeping a row set, and SqlResult.size() still gives the number of rows.
+ * @author Juan Tzun
+ *
+ */
+public final class Rows {
+
+	/**
+	 * @param mapper Maps a row
+	 * @return Collector of single row queries, with the value of the last row or null without rows
+	 */
+	public static <T> Collector<Row, ?, T> single(Function<Row, T> mapper) {
+		return Collector.<Row, Holder<T>, T>of(Holder::new, (holder, row) -> holder.value = mapper.apply(row), (first, second) -> second, holder -> holder.value);
+	}
+
+	/**
+	 * @param mapper Maps a row
+	 * @return Collector of the mapped rows in a list
+	 */
+	public static <T> Collector<Row, ?, List<T>> list(Function<Row, T> mapper) {
+		return Collectors.mapping(mapper, Collectors.toList());
+	}
+
+	/**
+	 * @param mapper Maps a row to a JSON value
+	 * @return Collector of the mapped rows in a JSON array
+	 */
+	public static Collector<Row, ?, JsonArray> jsonArray(Function<Row, ?> mapper) {
+		return Collector.of(JsonArray::new, (array, row) -> array.add(mapper.apply(row)), JsonArray::addAll);
+	}
+
+	private static class Holder<T> {
+		private T value;
+	}
+
+	private Rows() {
+	}
+}
@@ -0,0 +1,20 @@
+package com.juant.roxxy.core;
+
+/**
+ * Event bus addresses served by the Roxxy API verticle. Neivor uses them to check the Roxxy payments of its payment
+ * orders without connecting to the Roxxy database.
+ * Failures are replied with the custom error code as failure code and the description as message (for example 501 / pagos).
+ * @author Juan Tzun
+ *
+ */
+public final class RoxxyAddress {
+
+	/**
+	 * Payment orders with a Roxxy payment or with state updates waiting in the Roxxy outbox. Request: {codigos: [codigo]}.
+	 * Reply: {codigos: [codigo]}, the requested codes with a payment or updates
+	 */
+	public static final String ORDENES_PAGO_COBRADAS = "roxxy.ordenes-pago.cobradas";
+
+	private RoxxyAddress() {
+	}
+}
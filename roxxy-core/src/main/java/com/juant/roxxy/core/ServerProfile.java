@@ -0,0 +1,75 @@
+package com.juant.roxxy.core;
+
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.Http2Settings;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Server performance profile read from config.json. The following keys are available:
+ * <ul>
+ * 	<li><b>vertx.native.transport</b>: use epoll when available, NIO otherwise (default true)</li>
+ * 	<li><b>vertx.event.loop.pool.size</b>: event loop threads, 0 for 2 * cores (default 0)</li>
+ * 	<li><b>vertx.worker.pool.size</b>: worker threads (default 20)</li>
+ * 	<li><b>http.reuse.port</b>: SO_REUSEPORT, lets every event loop accept on its own socket (default true)</li>
+ * 	<li><b>http.tcp.no.delay</b>: TCP_NODELAY (default true)</li>
+ * 	<li><b>http.tcp.fast.open</b>: TCP_FASTOPEN, only with native transport (default true)</li>
+ * 	<li><b>http.tcp.quick.ack</b>: TCP_QUICKACK, only with native transport (default true)</li>
+ * 	<li><b>http.accept.backlog</b>: pending connections queue (default 1024)</li>
+ * 	<li><b>http.tcp.keep.alive</b>: SO_KEEPALIVE probes on idle connections (default true)</li>
+ * 	<li><b>http.idle.timeout</b>: seconds before an idle HTTP/1.1 keep-alive or HTTP/2 connection is closed (default 60)</li>
+ * 	<li><b>http.max.concurrent.streams</b>: HTTP/2 streams per connection (default 100)</li>
+ * 	<li><b>http.compression</b>: gzip/deflate responses negotiated by Accept-Encoding (default true)</li>
+ * 	<li><b>http.compression.level</b>: 1 (fastest) to 9 (smallest) (default 6)</li>
+ * 	<li><b>http.compression.min.size</b>: smaller JSON bodies are not compressed, see JsonResponseWriter (default 1024)</li>
+ * </ul>
+ * HTTP/1.1 keep-alive, pipelining and HTTP/2 over clear text (h2c, by upgrade or prior knowledge) need no switch,
+ * the server keeps persistent connections open, answers pipelined requests in order and accepts h2c connections.
+ * @author Juan Tzun
+ *
+ */
+public final class ServerProfile {
+
+	private ServerProfile() {
+	}
+
+	/**
+	 * Creates the Vert.x options: transport and thread pools
+	 * @param config Application config
+	 * @return Options for Vertx.vertx(options)
+	 */
+	public static VertxOptions getVertxOptions(JsonObject config) {
+		VertxOptions options = new VertxOptions()
+				.setPreferNativeTransport(config.getBoolean("vertx.native.transport", true))
+				.setWorkerPoolSize(config.getInteger("vertx.worker.pool.size", VertxOptions.DEFAULT_WORKER_POOL_SIZE));
+
+		int eventLoopPoolSize = config.getInteger("vertx.event.loop.pool.size", 0);
+		if(eventLoopPoolSize>0) {
+			options.setEventLoopPoolSize(eventLoopPoolSize);
+		}
+		return options;
+	}
+
+	/**
+	 * Creates the HTTP server options for an API. TCP options that need the native transport are ignored by Vert.x
+	 * when it falls back to NIO.
+	 * @param config Application config
+	 * @param port Listen port of the API
+	 * @return Options for createHttpServer(options)
+	 */
+	public static HttpServerOptions getHttpServerOptions(JsonObject config, int port) {
+		return new HttpServerOptions()
+				.setPort(port)
+				.setReusePort(config.getBoolean("http.reuse.port", true))
+				.setTcpNoDelay(config.getBoolean("http.tcp.no.delay", true))
+				.setTcpFastOpen(config.getBoolean("http.tcp.fast.open", true))
+				.setTcpQuickAck(config.getBoolean("http.tcp.quick.ack", true))
+				.setAcceptBacklog(config.getInteger("http.accept.backlog", 1024))
+				.setTcpKeepAlive(config.getBoolean("http.tcp.keep.alive", true))
+				.setIdleTimeout(config.getInteger("http.idle.timeout", 60))
+				.setInitialSettings(new Http2Settings()
+						.setMaxConcurrentStreams(config.getLong("http.max.concurrent.streams", 100L)))
+				.setCompressionSupported(config.getBoolean("http.compression", true))
+				.setCompressionLevel(config.getInteger("http.compression.level", 6));
+	}
+}
@@ -0,0 +1,69 @@
+package com.juant.roxxy.core;
+
+import java.util.function.Function;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.mysqlclient.MySQLPool;
+
+/**
+ * One of the databases of a sharded schema (see ShardRouter), with its pooled client and its circuit breaker.
+ * The client is replaced by ApiVerticle when the pool settings of the shard change.
+ * @author Juan Tzun
+ *
+ */
+public class Shard {
+
+	private final String name;
+	private final int index;
+	private final CircuitBreaker breaker;
+	private MySQLPool client;
+
+	/**
+	 * Constructor with parameters.
+	 * @param name Pool name, the database prefix or database prefix.shard name (for example neivor.b)
+	 * @param index Position of the shard in the config
+	 * @param client Pooled client
+	 * @param breaker Circuit breaker of the shard
+	 */
+	public Shard(String name, int index, MySQLPool client, CircuitBreaker breaker) {
+		this.name = name;
+		this.index = index;
+		this.client = client;
+		this.breaker = breaker;
+	}
+
+	/**
+	 * Executes a database call through the circuit breaker of the shard
+	 * @param call Starts the call with the client of the shard
+	 * @param handler Called with the result
+	 */
+	public <T> void execute(Function<MySQLPool, Future<T>> call, Handler<AsyncResult<T>> handler) {
+		breaker.execute(() -> call.apply(client), handler);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public MySQLPool getClient() {
+		return client;
+	}
+
+	/**
+	 * Replaces the pooled client, used when the pool is resized or its settings change
+	 * @param client Pooled client
+	 */
+	public void setClient(MySQLPool client) {
+		this.client = client;
+	}
+
+	public CircuitBreaker getBreaker() {
+		return breaker;
+	}
+}
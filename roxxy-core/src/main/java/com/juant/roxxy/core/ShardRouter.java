@@ -0,0 +1,152 @@
+package com.juant.roxxy.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Routes the queries of a database to its shards (see ApiVerticle.createShards). Keys are mapped with a consistent hash
+ * ring where every shard has database.shard.virtual.nodes points (default 128), so adding a shard only moves the keys
+ * that fall before its points; the rows of the moved keys have to be copied to the new shard. With a single shard
+ * every key goes to it.
+ * Sequence numbers generated by the shards (see interleave) carry their shard, number n belongs to the shard at
+ * position (n - 1) % stride (see routeNumber). The stride is <database>.shard.stride (default 1, never lower than the
+ * shard count) and must not change once numbers were generated, so it is set above the shard count expected in the future.
+ * Queries over all the shards are sent at the same time (see all and merge).
+ * @author Juan Tzun
+ *
+ */
+public class ShardRouter {
+
+	private final List<Shard> shards;
+	private final TreeMap<Integer, Shard> ring = new TreeMap<>();
+	private final int stride;
+
+	/**
+	 * Constructor with parameters.
+	 * @param database Prefix of the database (roxxy or neivor)
+	 * @param shards Shards in config order
+	 * @param config Application config
+	 */
+	public ShardRouter(String database, List<Shard> shards, JsonObject config) {
+		this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+		this.stride = Math.max(config.getInteger(database+".shard.stride", 1), shards.size());
+
+		int virtualNodes = Math.max(config.getInteger("database.shard.virtual.nodes", 128), 1);
+		for(Shard shard : shards) {
+			for(int i = 0; i<virtualNodes; i++) {
+				ring.put(hash(shard.getName()+"#"+i), shard);
+			}
+		}
+	}
+
+	/**
+	 * @param key Routing key, for example the department number or the customer code
+	 * @return Shard of the key
+	 */
+	public Shard route(String key) {
+		if(shards.size()==1) {
+			return shards.get(0);
+		}
+		Map.Entry<Integer, Shard> point = ring.ceilingEntry(hash(key));
+		return point!=null ? point.getValue() : ring.firstEntry().getValue();
+	}
+
+	/**
+	 * @param number Sequence number generated with interleave, as text (for example a payment order code)
+	 * @return Shard that generated the number, null if it is not a number or no shard is at its position
+	 */
+	public Shard routeNumber(String number) {
+		try {
+			return this.routeNumber(Long.parseLong(number));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param number Sequence number generated with interleave
+	 * @return Shard that generated the number, null if no shard is at its position
+	 */
+	public Shard routeNumber(long number) {
+		if(number<1) {
+			return null;
+		}
+		int index = (int) ((number-1)%stride);
+		return index<shards.size() ? shards.get(index) : null;
+	}
+
+	/**
+	 * Sequence numbers of different shards never collide
+	 * @param sequence Sequence of the shard, from 0
+	 * @param shard Shard that generates the number
+	 * @return Number of the sequence for the shard, from 1
+	 */
+	public long interleave(long sequence, Shard shard) {
+		return sequence*stride+shard.getIndex()+1;
+	}
+
+	/**
+	 * @return All the shards in config order
+	 */
+	public List<Shard> getShards() {
+		return shards;
+	}
+
+	/**
+	 * Sends a call to every shard at the same time
+	 * @param call Call for a shard
+	 * @return Results in shard order, failed if any call fails
+	 */
+	public <T> Future<List<T>> all(Function<Shard, Future<T>> call) {
+		List<Future> calls = new ArrayList<>(shards.size());
+		for(Shard shard : shards) {
+			calls.add(call.apply(shard));
+		}
+		return CompositeFuture.all(calls).map(CompositeFuture::list);
+	}
+
+	/**
+	 * Reads a page from every shard and merges them, the pages must be sorted by the same order
+	 * @param page Page of a shard with at most limite rows
+	 * @param order Order of the pages
+	 * @param limite Rows to keep
+	 * @return First limite rows of all the shards
+	 */
+	public <T> Future<List<T>> merge(Function<Shard, Future<List<T>>> page, Comparator<? super T> order, int limite) {
+		if(shards.size()==1) {
+			return page.apply(shards.get(0));
+		}
+		return this.all(page).map(pages -> {
+			List<T> rows = new ArrayList<>();
+			for(List<T> shardRows : pages) {
+				rows.addAll(shardRows);
+			}
+			rows.sort(order);
+			return rows.size()>limite ? new ArrayList<>(rows.subList(0, limite)) : rows;
+		});
+	}
+
+	/**
+	 * Murmur3 finalizer over the string hash, spreads similar keys over the ring
+	 * @param key Key or virtual node
+	 * @return Position in the ring
+	 */
+	private static int hash(String key) {
+		int h = key.hashCode();
+		h ^= h>>>16;
+		h *= 0x85ebca6b;
+		h ^= h>>>13;
+		h *= 0xc2b2ae35;
+		h ^= h>>>16;
+		return h;
+	}
+}
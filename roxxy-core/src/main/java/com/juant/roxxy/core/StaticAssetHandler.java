@@ -0,0 +1,264 @@
+package com.juant.roxxy.core;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.FileProps;
+import io.vertx.core.file.FileSystem;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.impl.MimeMapping;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Serves static files from the web root (file system or classpath) for GET and HEAD requests. The following keys are available:
+ * <ul>
+ * 	<li><b>static.web.root</b>: directory of the files (default webroot)</li>
+ * 	<li><b>static.max.age</b>: Cache-Control max-age in seconds (default 86400)</li>
+ * 	<li><b>static.precompressed</b>: serve file.br or file.gz when the client accepts it and the file exists (default true)</li>
+ * 	<li><b>static.cache.max.entries</b>: files kept in the least recently used cache (default 256)</li>
+ * 	<li><b>static.cache.max.file.size</b>: files up to this size in bytes are kept in memory, bigger ones are sent
+ * 	with sendFile (zero-copy) (default 16384)</li>
+ * 	<li><b>static.cache.entry.timeout</b>: milliseconds before a cached file is checked again (default 30000)</li>
+ * </ul>
+ * Every file is sent with ETag, Last-Modified and Cache-Control, If-None-Match and If-Modified-Since are answered
+ * with 304. Requests for missing files call the next route.
+ * @author Juan Tzun
+ *
+ */
+public class StaticAssetHandler implements Handler<RoutingContext> {
+
+	private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+	private final FileSystem fileSystem;
+	private final Map<String, Asset> cache;
+	private String webRoot;
+	private String cacheControl;
+	private boolean precompressed;
+	private long maxFileSize;
+	private long entryTimeout;
+	private int maxEntries;
+
+	/**
+	 * Constructor with parameters.
+	 * @param fileSystem Vert.x file system
+	 * @param config Application config
+	 */
+	public StaticAssetHandler(FileSystem fileSystem, JsonObject config) {
+		this.fileSystem = fileSystem;
+		this.cache = new LinkedHashMap<String, Asset>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Asset> eldest) {
+				return size()>maxEntries;
+			}
+		};
+		this.configure(config);
+	}
+
+	/**
+	 * Reads the static.* settings. Cached files are dropped so they are read again with the new settings.
+	 * @param config Application config
+	 */
+	public void configure(JsonObject config) {
+		this.webRoot = config.getString("static.web.root", "webroot");
+		this.cacheControl = "public, max-age="+config.getLong("static.max.age", 86400L);
+		this.precompressed = config.getBoolean("static.precompressed", true);
+		this.maxFileSize = config.getLong("static.cache.max.file.size", 16384L);
+		this.entryTimeout = config.getLong("static.cache.entry.timeout", 30000L);
+		this.maxEntries = config.getInteger("static.cache.max.entries", 256);
+		this.cache.clear();
+	}
+
+	@Override
+	public void handle(RoutingContext routingContext) {
+		HttpServerRequest request = routingContext.request();
+		String path = routingContext.normalizedPath();
+
+		if((request.method()!=HttpMethod.GET && request.method()!=HttpMethod.HEAD) || path.contains("..")) {
+			routingContext.next();
+			return;
+		}
+		if(path.endsWith("/")) {
+			path += "index.html";
+		}
+
+		String encoding = this.getAcceptedEncoding(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+		String key = encoding+":"+path;
+		Asset asset = cache.get(key);
+
+		if(asset!=null && System.currentTimeMillis()-asset.loaded<entryTimeout) {
+			this.send(routingContext, asset);
+		} else {
+			final String file = webRoot+path;
+			this.resolve(file, encoding).onComplete(resAsset -> {
+				if(resAsset.succeeded()) {
+					cache.put(key, resAsset.result());
+					this.send(routingContext, resAsset.result());
+				} else {
+					cache.remove(key);
+					routingContext.next();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Precompressed variant that can be sent to the client, br first and then gzip
+	 * @param acceptEncoding Accept-Encoding header
+	 * @return br, gzip or identity
+	 */
+	private String getAcceptedEncoding(String acceptEncoding) {
+		if(!precompressed || acceptEncoding==null) {
+			return "identity";
+		} else if(acceptEncoding.contains("br")) {
+			return "br";
+		} else if(acceptEncoding.contains("gzip")) {
+			return "gzip";
+		}
+		return "identity";
+	}
+
+	/**
+	 * Finds the file to be sent, the precompressed variant if it exists or the file itself, and reads it in memory if it is small
+	 * @param file File path
+	 * @param encoding Accepted encoding
+	 * @return Asset, failed if the file does not exist
+	 */
+	private Future<Asset> resolve(String file, String encoding) {
+		String contentType = MimeMapping.getMimeTypeForFilename(file);
+
+		Future<Asset> variant;
+		if(encoding.equals("br")) {
+			variant = this.load(file+".br", file, contentType, "br")
+					.recover(e -> this.load(file+".gz", file, contentType, "gzip"));
+		} else if(encoding.equals("gzip")) {
+			variant = this.load(file+".gz", file, contentType, "gzip");
+		} else {
+			variant = Future.failedFuture("identity");
+		}
+		return variant.recover(e -> this.load(file, file, contentType, null));
+	}
+
+	/**
+	 * Reads file properties, and the content when the file is small enough to be cached
+	 * @param path Path of the file to send
+	 * @param file Path of the requested file
+	 * @param contentType Content type of the requested file
+	 * @param contentEncoding Encoding of the file to send, null if it is not compressed
+	 * @return Asset, failed if the file does not exist
+	 */
+	private Future<Asset> load(String path, String file, String contentType, String contentEncoding) {
+		return fileSystem.props(path).compose(props -> {
+			if(!props.isRegularFile()) {
+				return Future.failedFuture(file+" is not a file");
+			}
+			Asset asset = new Asset(path, contentType, contentEncoding, props);
+			if(props.size()>maxFileSize) {
+				return Future.succeededFuture(asset);
+			}
+			return fileSystem.readFile(path).map(content -> {
+				asset.content = content;
+				return asset;
+			});
+		});
+	}
+
+	/**
+	 * Sends the asset or 304 if the client copy is still valid
+	 * @param routingContext Represents the context for the handling of a request in Vert.x-Web.
+	 * @param asset File to send
+	 */
+	private void send(RoutingContext routingContext, Asset asset) {
+		HttpServerRequest request = routingContext.request();
+		HttpServerResponse response = routingContext.response();
+
+		response.putHeader(HttpHeaders.ETAG, asset.etag)
+			.putHeader(HttpHeaders.LAST_MODIFIED, asset.lastModifiedDate)
+			.putHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+		if(precompressed) {
+			response.putHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		}
+
+		if(this.isNotModified(request, asset)) {
+			response.setStatusCode(304).end();
+			return;
+		}
+
+		if(asset.contentType!=null) {
+			response.putHeader(HttpHeaders.CONTENT_TYPE, asset.contentType);
+		}
+		//Precompressed files and files sent with sendFile are never compressed again by the server
+		if(asset.contentEncoding!=null) {
+			response.putHeader(HttpHeaders.CONTENT_ENCODING, asset.contentEncoding);
+		} else if(asset.content==null) {
+			response.putHeader(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+		}
+
+		if(request.method()==HttpMethod.HEAD) {
+			response.putHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(asset.size)).end();
+		} else if(asset.content!=null) {
+			response.end(asset.content);
+		} else {
+			response.sendFile(asset.path);
+		}
+	}
+
+	/**
+	 * @param request Request with If-None-Match or If-Modified-Since
+	 * @param asset File to send
+	 * @return true if the client copy of the file is still valid
+	 */
+	private boolean isNotModified(HttpServerRequest request, Asset asset) {
+		String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+		if(ifNoneMatch!=null) {
+			return ifNoneMatch.equals("*") || ifNoneMatch.contains(asset.etag);
+		}
+		String ifModifiedSince = request.getHeader(HttpHeaders.IF_MODIFIED_SINCE);
+		if(ifModifiedSince!=null) {
+			try {
+				long since = Instant.from(HTTP_DATE.parse(ifModifiedSince)).getEpochSecond();
+				return asset.lastModified/1000<=since;
+			} catch (Exception e) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * File ready to be sent, content is null for files sent with sendFile
+	 */
+	private static class Asset {
+		private final String path;
+		private final String contentType;
+		private final String contentEncoding;
+		private final long size;
+		private final long lastModified;
+		private final String lastModifiedDate;
+		private final String etag;
+		private final long loaded;
+		private Buffer content;
+
+		private Asset(String path, String contentType, String contentEncoding, FileProps props) {
+			this.path = path;
+			this.contentType = contentType;
+			this.contentEncoding = contentEncoding;
+			this.size = props.size();
+			this.lastModified = props.lastModifiedTime();
+			this.lastModifiedDate = HTTP_DATE.format(Instant.ofEpochMilli(lastModified));
+			this.etag = "W/\""+Long.toHexString(size)+"-"+Long.toHexString(lastModified)+"\"";
+			this.loaded = System.currentTimeMillis();
+		}
+	}
+}
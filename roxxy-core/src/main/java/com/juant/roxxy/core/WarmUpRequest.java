@@ -0,0 +1,87 @@
+package com.juant.roxxy.core;
+
+import java.util.UUID;
+
+import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Request sent by an API verticle to itself after it starts listening, to warm up the JIT before it reports ready.
+ * Warm up requests must not change any data, for example requests rejected by body validation.
+ * Every warm up request carries the HEADER header with a token created on every start, so the handlers can tell them
+ * from client requests (see isWarmUp), for example to leave them out of the rate limits.
+ * @author Juan Tzun
+ *
+ */
+public class WarmUpRequest {
+
+	/**
+	 * Header with the warm up token
+	 */
+	public static final String HEADER = "x-roxxy-warm-up";
+
+	//Random so that clients cannot send it
+	private static final String TOKEN = UUID.randomUUID().toString();
+
+	private final HttpMethod method;
+	private final String uri;
+	private final String body;
+	private final MultiMap headers;
+
+	/**
+	 * Constructor with parameters.
+	 * @param method HTTP method
+	 * @param uri Request URI
+	 * @param body Request body, null for no body
+	 */
+	public WarmUpRequest(HttpMethod method, String uri, String body) {
+		this.method = method;
+		this.uri = uri;
+		this.body = body;
+		this.headers = MultiMap.caseInsensitiveMultiMap().add(HEADER, TOKEN);
+	}
+
+	/**
+	 * @param routingContext Request context
+	 * @return true if the request is a warm up request sent by this process
+	 */
+	public static boolean isWarmUp(RoutingContext routingContext) {
+		return TOKEN.equals(routingContext.request().getHeader(HEADER));
+	}
+
+	/**
+	 * Adds a header to the request
+	 * @param name Header name
+	 * @param value Header value
+	 * @return This request
+	 */
+	public WarmUpRequest putHeader(String name, String value) {
+		headers.add(name, value);
+		return this;
+	}
+
+	/**
+	 * Sends the request to localhost and reads the whole response
+	 * @param client HTTP client
+	 * @param port Listen port of the API
+	 * @return Completed when the response is read, whatever its status code is
+	 */
+	public Future<Void> send(HttpClient client, int port) {
+		RequestOptions options = new RequestOptions()
+				.setMethod(method)
+				.setHost("localhost")
+				.setPort(port)
+				.setURI(uri)
+				.setHeaders(headers);
+
+		return client.request(options)
+				.compose(request -> body==null ? request.send() : request.send(body))
+				.compose(HttpClientResponse::body)
+				.mapEmpty();
+	}
+}
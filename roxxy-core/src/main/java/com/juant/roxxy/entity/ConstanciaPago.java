@@ -0,0 +1,58 @@
+package com.juant.roxxy.entity;
+
+/**
+ * Entity class to map pagos table from Roxxy database
+ * @author Juan Tzun
+ *
+ */
+public class ConstanciaPago {
+
+	private Long idTransaccion;
+	private long montoTotal;
+	private String ordenPago;
+	
+	/**
+	 * Constructor without parameters. Initialize all attributes with default values.
+	 */
+	public ConstanciaPago() {
+		this.idTransaccion = 0L;
+		this.montoTotal = 0L;
+		this.ordenPago = "";
+	}
+
+	/**
+	 * Constructor with parameters.
+	 * @param idTransaccion Payment constancy transaction id
+	 * @param montoTotal Payment amount in cents (see Money)
+	 * @param ordenPago Payment order code
+	 */
+	public ConstanciaPago(Long idTransaccion, long montoTotal, String ordenPago) {
+		this.idTransaccion = idTransaccion;
+		this.montoTotal = montoTotal;
+		this.ordenPago = ordenPago;
+	}
+
+	public Long getIdTransaccion() {
+		return idTransaccion;
+	}
+
+	public void setIdTransaccion(Long idTransaccion) {
+		this.idTransaccion = idTransaccion;
+	}
+
+	public long getMontoTotal() {
+		return montoTotal;
+	}
+
+	public void setMontoTotal(long montoTotal) {
+		this.montoTotal = montoTotal;
+	}
+
+	public String getOrdenPago() {
+		return ordenPago;
+	}
+
+	public void setOrdenPago(String ordenPago) {
+		this.ordenPago = ordenPago;
+	}
+}
@@ -0,0 +1,163 @@
+package com.juant.roxxy.entity;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * Money amounts as a primitive long count of cents. Arithmetic and comparison use plain long operators,
+ * conversions are only needed at the edges:
+ * <ul>
+ * 	<li>JSON: Serializer and Deserializer write and read decimal numbers (12.34) for long fields</li>
+ * 	<li>Database: toDecimal binds DECIMAL parameters and fromDecimal reads DECIMAL columns</li>
+ * 	<li>Request bodies: of reads numbers or strings already decoded by Vert.x</li>
+ * </ul>
+ * @author Juan Tzun
+ *
+ */
+public final class Money {
+
+	/**
+	 * Value for a missing or invalid amount
+	 */
+	public static final long NONE = Long.MIN_VALUE;
+
+	private Money() {
+	}
+
+	/**
+	 * Parses a decimal amount (12, 12.3, 12.34, -12.34) without intermediate objects
+	 * @param chars Characters of the amount
+	 * @param offset First character
+	 * @param length Number of characters
+	 * @return Amount in cents
+	 * @throws NumberFormatException If it is not a number, it has no digits (., -) or it has more than two decimals
+	 */
+	public static long parse(char[] chars, int offset, int length) {
+		int end = offset+length;
+		int i = offset;
+		boolean negative = false;
+		if(i<end && (chars[i]=='-' || chars[i]=='+')) {
+			negative = chars[i]=='-';
+			i++;
+		}
+
+		long cents = 0;
+		int decimals = -1;
+		int digits = 0;
+		for(; i<end; i++) {
+			char c = chars[i];
+			if(c=='.' && decimals<0) {
+				decimals = 0;
+			} else if(c>='0' && c<='9') {
+				digits++;
+				if(decimals>=0 && ++decimals>2) {
+					//Trailing zeros are allowed (12.340)
+					if(c!='0') {
+						throw new NumberFormatException(new String(chars, offset, length));
+					}
+					continue;
+				}
+				cents = Math.addExact(Math.multiplyExact(cents, 10), c-'0');
+			} else {
+				throw new NumberFormatException(new String(chars, offset, length));
+			}
+		}
+		if(digits==0) {
+			throw new NumberFormatException(new String(chars, offset, length));
+		}
+		for(int d = Math.max(decimals, 0); d<2; d++) {
+			cents = Math.multiplyExact(cents, 10);
+		}
+		return negative ? -cents : cents;
+	}
+
+	/**
+	 * Parses a decimal amount
+	 * @param value Amount, for example 12.34
+	 * @return Amount in cents
+	 */
+	public static long parse(String value) {
+		return parse(value.toCharArray(), 0, value.length());
+	}
+
+	/**
+	 * Converts a value decoded from a JSON body
+	 * @param value Number or String
+	 * @return Amount in cents
+	 * @throws IllegalArgumentException If the value is not an amount
+	 */
+	public static long of(Object value) {
+		if(value instanceof Integer || value instanceof Long || value instanceof Short) {
+			return Math.multiplyExact(((Number) value).longValue(), 100);
+		} else if(value instanceof BigDecimal) {
+			return fromDecimal((BigDecimal) value);
+		} else if(value instanceof Number) {
+			//Amounts with up to two decimals are exact after rounding
+			return Math.round(((Number) value).doubleValue()*100);
+		} else if(value instanceof String) {
+			return parse((String) value);
+		}
+		throw new IllegalArgumentException("Invalid amount: "+value);
+	}
+
+	/**
+	 * @param value DECIMAL column value
+	 * @return Amount in cents, rounded half up to two decimals
+	 */
+	public static long fromDecimal(BigDecimal value) {
+		return value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
+
+	/**
+	 * @param cents Amount in cents
+	 * @return Value for a DECIMAL parameter
+	 */
+	public static BigDecimal toDecimal(long cents) {
+		return BigDecimal.valueOf(cents, 2);
+	}
+
+	/**
+	 * @param cents Amount in cents
+	 * @return Decimal text, for example 12.34
+	 */
+	public static String format(long cents) {
+		return toDecimal(cents).toPlainString();
+	}
+
+	/**
+	 * Writes long cents fields as decimal JSON numbers
+	 */
+	public static class Serializer extends JsonSerializer<Long> {
+		@Override
+		public void serialize(Long cents, JsonGenerator generator, SerializerProvider provider) throws IOException {
+			generator.writeNumber(toDecimal(cents));
+		}
+	}
+
+	/**
+	 * Reads decimal JSON numbers or strings into long cents fields, without going through double
+	 */
+	public static class Deserializer extends JsonDeserializer<Long> {
+		@Override
+		public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+			JsonToken token = parser.currentToken();
+			if(token==JsonToken.VALUE_NUMBER_INT || token==JsonToken.VALUE_NUMBER_FLOAT || token==JsonToken.VALUE_STRING) {
+				try {
+					return parse(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+				} catch (NumberFormatException | ArithmeticException e) {
+					return (Long) context.handleWeirdStringValue(Long.class, parser.getText(), "not a valid amount");
+				}
+			}
+			return (Long) context.handleUnexpectedToken(Long.class, parser);
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package com.juant.roxxy.entity;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
 /**
  * Entity class to map detalles_pagos table from Roxxy database
  * @author Juan Tzun
@@ -10,8 +13,12 @@ public class Pago {
 	private Integer numeroCuota;
 	private String detalleCuota;
 	private String fechaVencimiento;
-	private Double importeCuota;
-	private Double importeComision;
+	@JsonSerialize(using = Money.Serializer.class)
+	@JsonDeserialize(using = Money.Deserializer.class)
+	private long importeCuota;
+	@JsonSerialize(using = Money.Serializer.class)
+	@JsonDeserialize(using = Money.Deserializer.class)
+	private long importeComision;
 	
 	/**
 	 * Constructor without parameters. Initialize all attributes with default values.
@@ -20,8 +27,8 @@ public class Pago {
 		this.numeroCuota = 0;
 		this.detalleCuota = "";
 		this.fechaVencimiento = "";
-		this.importeCuota = 0.0;
-		this.importeComision = 0.0;
+		this.importeCuota = 0L;
+		this.importeComision = 0L;
 	}
 
 	/**
@@ -29,11 +36,11 @@ public class Pago {
 	 * @param numeroCuota Payment fee number
 	 * @param detalleCuota Payment fee description
 	 * @param fechaVencimiento Payment fee expiration date
-	 * @param importeCuota Payment fee amount
-	 * @param importeComision Payment fee comission
+	 * @param importeCuota Payment fee amount in cents (see Money)
+	 * @param importeComision Payment fee comission in cents (see Money)
 	 */
-	public Pago(Integer numeroCuota, String detalleCuota, String fechaVencimiento, Double importeCuota,
-			Double importeComision) {
+	public Pago(Integer numeroCuota, String detalleCuota, String fechaVencimiento, long importeCuota,
+			long importeComision) {
 		this.numeroCuota = numeroCuota;
 		this.detalleCuota = detalleCuota;
 		this.fechaVencimiento = fechaVencimiento;
@@ -67,19 +74,19 @@ public class Pago {
 		this.fechaVencimiento = fechaVencimiento;
 	}
 
-	public Double getImporteCuota() {
+	public long getImporteCuota() {
 		return importeCuota;
 	}
 
-	public void setImporteCuota(Double importeCuota) {
+	public void setImporteCuota(long importeCuota) {
 		this.importeCuota = importeCuota;
 	}
 
-	public Double getImporteComision() {
+	public long getImporteComision() {
 		return importeComision;
 	}
 
-	public void setImporteComision(Double importeComision) {
+	public void setImporteComision(long importeComision) {
 		this.importeComision = importeComision;
 	}
 
@@ -0,0 +1,28 @@
+package com.juant.roxxy.request;
+
+/**
+ * Body of /api/roxxy/condominium/search-payments, read with RequestReader
+ * @author Juan Tzun
+ *
+ */
+public class ConsultaRequest {
+
+	private String codigoBusqueda;
+	private String codServicio;
+
+	public String getCodigoBusqueda() {
+		return codigoBusqueda;
+	}
+
+	public void setCodigoBusqueda(String codigoBusqueda) {
+		this.codigoBusqueda = codigoBusqueda;
+	}
+
+	public String getCodServicio() {
+		return codServicio;
+	}
+
+	public void setCodServicio(String codServicio) {
+		this.codServicio = codServicio;
+	}
+}
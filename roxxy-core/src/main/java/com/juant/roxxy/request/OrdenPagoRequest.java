@@ -0,0 +1,37 @@
+package com.juant.roxxy.request;
+
+/**
+ * Body of /api/neivor/generate-payment-order, read with RequestReader
+ * @author Juan Tzun
+ *
+ */
+public class OrdenPagoRequest {
+
+	private String nombrePagador;
+	private String documentoPagador;
+	private String numeroDepartamento;
+
+	public String getNombrePagador() {
+		return nombrePagador;
+	}
+
+	public void setNombrePagador(String nombrePagador) {
+		this.nombrePagador = nombrePagador;
+	}
+
+	public String getDocumentoPagador() {
+		return documentoPagador;
+	}
+
+	public void setDocumentoPagador(String documentoPagador) {
+		this.documentoPagador = documentoPagador;
+	}
+
+	public String getNumeroDepartamento() {
+		return numeroDepartamento;
+	}
+
+	public void setNumeroDepartamento(String numeroDepartamento) {
+		this.numeroDepartamento = numeroDepartamento;
+	}
+}
@@ -0,0 +1,89 @@
+package com.juant.roxxy.request;
+
+import java.util.List;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.juant.roxxy.entity.Money;
+import com.juant.roxxy.entity.Pago;
+
+/**
+ * Body of /api/roxxy/condominium/make-payment, read with RequestReader. montoTotal is in cents (see Money), Money.NONE when it is missing
+ * @author Juan Tzun
+ *
+ */
+public class PagoRequest {
+
+	private String codigoBusqueda;
+	private String ordenPago;
+	@JsonDeserialize(using = Money.Deserializer.class)
+	private long montoTotal = Money.NONE;
+	private String fechaPago;
+	private String nombreFactura;
+	private String nit;
+	private String lugarPago;
+	private List<Pago> detallePago;
+
+	public String getCodigoBusqueda() {
+		return codigoBusqueda;
+	}
+
+	public void setCodigoBusqueda(String codigoBusqueda) {
+		this.codigoBusqueda = codigoBusqueda;
+	}
+
+	public String getOrdenPago() {
+		return ordenPago;
+	}
+
+	public void setOrdenPago(String ordenPago) {
+		this.ordenPago = ordenPago;
+	}
+
+	public long getMontoTotal() {
+		return montoTotal;
+	}
+
+	public void setMontoTotal(long montoTotal) {
+		this.montoTotal = montoTotal;
+	}
+
+	public String getFechaPago() {
+		return fechaPago;
+	}
+
+	public void setFechaPago(String fechaPago) {
+		this.fechaPago = fechaPago;
+	}
+
+	public String getNombreFactura() {
+		return nombreFactura;
+	}
+
+	public void setNombreFactura(String nombreFactura) {
+		this.nombreFactura = nombreFactura;
+	}
+
+	public String getNit() {
+		return nit;
+	}
+
+	public void setNit(String nit) {
+		this.nit = nit;
+	}
+
+	public String getLugarPago() {
+		return lugarPago;
+	}
+
+	public void setLugarPago(String lugarPago) {
+		this.lugarPago = lugarPago;
+	}
+
+	public List<Pago> getDetallePago() {
+		return detallePago;
+	}
+
+	public void setDetallePago(List<Pago> detallePago) {
+		this.detallePago = detallePago;
+	}
+}
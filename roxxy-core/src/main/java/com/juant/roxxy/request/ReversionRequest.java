@@ -0,0 +1,46 @@
+package com.juant.roxxy.request;
+
+/**
+ * Body of /api/roxxy/condominium/payment-reversion, read with RequestReader
+ * @author Juan Tzun
+ *
+ */
+public class ReversionRequest {
+
+	private String codigoBusqueda;
+	private Long idPago;
+	private Long idReversion;
+	private String fechaReversion;
+
+	public String getCodigoBusqueda() {
+		return codigoBusqueda;
+	}
+
+	public void setCodigoBusqueda(String codigoBusqueda) {
+		this.codigoBusqueda = codigoBusqueda;
+	}
+
+	public Long getIdPago() {
+		return idPago;
+	}
+
+	public void setIdPago(Long idPago) {
+		this.idPago = idPago;
+	}
+
+	public Long getIdReversion() {
+		return idReversion;
+	}
+
+	public void setIdReversion(Long idReversion) {
+		this.idReversion = idReversion;
+	}
+
+	public String getFechaReversion() {
+		return fechaReversion;
+	}
+
+	public void setFechaReversion(String fechaReversion) {
+		this.fechaReversion = fechaReversion;
+	}
+}
@@ -3,6 +3,8 @@ package com.juant.roxxy.response;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.juant.roxxy.entity.Money;
 import com.juant.roxxy.entity.Pago;
 
 /**
@@ -14,9 +16,12 @@ public class ConsultaResponse {
 
 	private String codigoBusqueda;
 	private String codigoServicio;
-	private Double importeAdeudado;
-	private Double importeMinimo;
-	private Double importeComision;
+	@JsonSerialize(using = Money.Serializer.class)
+	private long importeAdeudado;
+	@JsonSerialize(using = Money.Serializer.class)
+	private long importeMinimo;
+	@JsonSerialize(using = Money.Serializer.class)
+	private long importeComision;
 	private String nombreCliente;
 	private List<Pago> pagos;
 	
@@ -26,9 +31,9 @@ public class ConsultaResponse {
 	public ConsultaResponse() {
 		this.codigoBusqueda = "";
 		this.codigoServicio = "";
-		this.importeAdeudado = 0.0;
-		this.importeMinimo = 0.0;
-		this.importeComision = 0.0;
+		this.importeAdeudado = 0L;
+		this.importeMinimo = 0L;
+		this.importeComision = 0L;
 		this.nombreCliente = "";
 		this.pagos = new ArrayList<>();
 	}
@@ -37,14 +42,14 @@ public class ConsultaResponse {
 	 * Constructor with parameters.
 	 * @param codigoBusqueda Roxxy customer code
 	 * @param codigoServicio Neivor payment order code
-	 * @param importeAdeudado Payment order amount
-	 * @param importeMinimo Payment order minimum amount
-	 * @param importeComision Payment order comission (always 0)
+	 * @param importeAdeudado Payment order amount in cents (see Money)
+	 * @param importeMinimo Payment order minimum amount in cents
+	 * @param importeComision Payment order comission in cents (always 0)
 	 * @param nombreCliente Roxxy customer name
 	 * @param pagos Payment order fees
 	 */
-	public ConsultaResponse(String codigoBusqueda, String codigoServicio, Double importeAdeudado, Double importeMinimo,
-			Double importeComision, String nombreCliente, List<Pago> pagos) {
+	public ConsultaResponse(String codigoBusqueda, String codigoServicio, long importeAdeudado, long importeMinimo,
+			long importeComision, String nombreCliente, List<Pago> pagos) {
 		this.codigoBusqueda = codigoBusqueda;
 		this.codigoServicio = codigoServicio;
 		this.importeAdeudado = importeAdeudado;
@@ -72,27 +77,27 @@ public class ConsultaResponse {
 		this.codigoServicio = codigoServicio;
 	}
 
-	public Double getImporteAdeudado() {
+	public long getImporteAdeudado() {
 		return importeAdeudado;
 	}
 
-	public void setImporteAdeudado(Double importeAdeudado) {
+	public void setImporteAdeudado(long importeAdeudado) {
 		this.importeAdeudado = importeAdeudado;
 	}
 
-	public Double getImporteMinimo() {
+	public long getImporteMinimo() {
 		return importeMinimo;
 	}
 
-	public void setImporteMinimo(Double importeMinimo) {
+	public void setImporteMinimo(long importeMinimo) {
 		this.importeMinimo = importeMinimo;
 	}
 
-	public Double getImporteComision() {
+	public long getImporteComision() {
 		return importeComision;
 	}
 
-	public void setImporteComision(Double importeComision) {
+	public void setImporteComision(long importeComision) {
 		this.importeComision = importeComision;
 	}
 
@@ -0,0 +1,52 @@
+package com.juant.roxxy.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit test for BloomFilter.
+ * @author Juan Tzun
+ *
+ */
+public class BloomFilterTest {
+
+	@Test
+	public void hasNoFalseNegatives() {
+		BloomFilter filter = new BloomFilter(10000, 0.01);
+		for(int i = 0; i<20000; i++) {
+			filter.add("CLIENTE"+i);
+		}
+		//Also over the expected strings
+		for(int i = 0; i<20000; i++) {
+			assertTrue(filter.mightContain("CLIENTE"+i));
+		}
+	}
+
+	@Test
+	public void keepsTheFalsePositiveRate() {
+		BloomFilter filter = new BloomFilter(10000, 0.01);
+		for(int i = 0; i<10000; i++) {
+			filter.add("CLIENTE"+i);
+		}
+		int falsePositives = 0;
+		for(int i = 0; i<10000; i++) {
+			if(filter.mightContain("OTRO"+i)) {
+				falsePositives++;
+			}
+		}
+		//Expected about 100
+		assertTrue("False positives: "+falsePositives, falsePositives<300);
+	}
+
+	@Test
+	public void startsEmpty() {
+		BloomFilter filter = new BloomFilter(0, 0.01);
+		assertFalse(filter.mightContain(""));
+		assertFalse(filter.mightContain("CLIENTE"));
+		filter.add("");
+		assertTrue(filter.mightContain(""));
+		assertTrue(filter.getBits()>0);
+	}
+}
@@ -0,0 +1,95 @@
+package com.juant.roxxy.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Lock;
+
+/**
+ * Unit test for KeyedMutex. Locks are acquired outside Vert.x, so the next task runs at once on release.
+ * @author Juan Tzun
+ *
+ */
+public class KeyedMutexTest {
+
+	private static KeyedMutex mutex(int queue) {
+		return new KeyedMutex("test", new JsonObject().put("test.lock.queue", queue).put("test.lock.stripes", 4));
+	}
+
+	@Test
+	public void handsTheLockOverInArrivalOrder() {
+		KeyedMutex mutex = mutex(10);
+		List<String> order = new ArrayList<>();
+		List<Lock> locks = new ArrayList<>();
+		for(int i = 0; i<4; i++) {
+			String task = "task"+i;
+			mutex.acquire("A", resLock -> {
+				assertTrue(resLock.succeeded());
+				order.add(task);
+				locks.add(resLock.result());
+			});
+		}
+		assertEquals(1, order.size());
+
+		for(int i = 0; i<3; i++) {
+			locks.get(i).release();
+			assertEquals(i+2, order.size());
+		}
+		assertEquals(Arrays.asList("task0", "task1", "task2", "task3"), order);
+	}
+
+	@Test
+	public void runsOtherKeysAtOnce() {
+		KeyedMutex mutex = mutex(10);
+		List<String> acquired = new ArrayList<>();
+		for(int i = 0; i<20; i++) {
+			String key = "key"+i;
+			mutex.acquire(key, resLock -> acquired.add(key));
+		}
+		assertEquals(20, acquired.size());
+	}
+
+	@Test
+	public void rejectsOverTheQueueBound() {
+		KeyedMutex mutex = mutex(2);
+		List<Boolean> results = new ArrayList<>();
+		for(int i = 0; i<4; i++) {
+			mutex.acquire("A", resLock -> results.add(resLock.succeeded()));
+		}
+		//The holder, two waiting and one rejected
+		assertEquals(Arrays.asList(true, false), results);
+	}
+
+	@Test
+	public void ignoresASecondRelease() {
+		KeyedMutex mutex = mutex(10);
+		List<Lock> locks = new ArrayList<>();
+		for(int i = 0; i<3; i++) {
+			mutex.acquire("A", resLock -> locks.add(resLock.result()));
+		}
+		locks.get(0).release();
+		locks.get(0).release();
+
+		//Only the second task holds the lock
+		assertEquals(2, locks.size());
+		locks.get(1).release();
+		assertEquals(3, locks.size());
+	}
+
+	@Test
+	public void freesTheKeyWithoutWaiters() {
+		KeyedMutex mutex = mutex(10);
+		List<Lock> locks = new ArrayList<>();
+		mutex.acquire("A", resLock -> locks.add(resLock.result()));
+		locks.get(0).release();
+		mutex.acquire("A", resLock -> locks.add(resLock.result()));
+		assertEquals(2, locks.size());
+	}
+}
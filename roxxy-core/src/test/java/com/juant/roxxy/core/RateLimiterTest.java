@@ -0,0 +1,89 @@
+package com.juant.roxxy.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Unit test for RateLimiter. The limits are low enough for the bucket not to refill while a burst is taken.
+ * @author Juan Tzun
+ *
+ */
+public class RateLimiterTest {
+
+	private static RateLimiter rateLimiter(int limit, int burst, int maxEntidades) {
+		return new RateLimiter("test", new JsonObject()
+				.put("test.rate.limit", limit)
+				.put("test.rate.burst", burst)
+				.put("test.rate.max.entidades", maxEntidades));
+	}
+
+	@Test
+	public void allowsTheBurstThenRejects() {
+		RateLimiter rateLimiter = rateLimiter(1, 3, 10);
+		assertTrue(rateLimiter.tryAcquire("A"));
+		assertTrue(rateLimiter.tryAcquire("A"));
+		assertTrue(rateLimiter.tryAcquire("A"));
+		assertFalse(rateLimiter.tryAcquire("A"));
+
+		//Other entities have their own bucket
+		assertTrue(rateLimiter.tryAcquire("B"));
+	}
+
+	@Test
+	public void refillsAtTheLimit() throws InterruptedException {
+		RateLimiter rateLimiter = rateLimiter(20, 1, 10);
+		assertTrue(rateLimiter.tryAcquire("A"));
+		assertFalse(rateLimiter.tryAcquire("A"));
+
+		//One token every 50 ms
+		Thread.sleep(120);
+		assertTrue(rateLimiter.tryAcquire("A"));
+	}
+
+	@Test
+	public void sharesABucketOverMaxEntidades() {
+		RateLimiter rateLimiter = rateLimiter(1, 2, 1);
+		assertTrue(rateLimiter.tryAcquire("A"));
+		assertTrue(rateLimiter.tryAcquire("B"));
+		assertTrue(rateLimiter.tryAcquire("C"));
+		assertFalse(rateLimiter.tryAcquire("B"));
+		assertFalse(rateLimiter.tryAcquire("D"));
+
+		//The first entity keeps its own bucket
+		assertTrue(rateLimiter.tryAcquire("A"));
+	}
+
+	@Test
+	public void appliesEntidadLimits() {
+		RateLimiter rateLimiter = new RateLimiter("test", new JsonObject()
+				.put("test.rate.limit", 1)
+				.put("test.rate.burst", 1)
+				.put("test.rate.max.entidades", 0)
+				.put("test.rate.entidades", new JsonObject().put("BANCO1", new JsonObject().put("limit", 1).put("burst", 2))));
+		assertTrue(rateLimiter.tryAcquire("BANCO1"));
+		assertTrue(rateLimiter.tryAcquire("BANCO1"));
+		assertFalse(rateLimiter.tryAcquire("BANCO1"));
+	}
+
+	@Test
+	public void doesNotLimitWithoutRate() {
+		RateLimiter rateLimiter = rateLimiter(0, 1, 10);
+		for(int i = 0; i<1000; i++) {
+			assertTrue(rateLimiter.tryAcquire("A"));
+		}
+	}
+
+	@Test
+	public void createsBucketsAgainOnConfigure() {
+		RateLimiter rateLimiter = rateLimiter(1, 1, 10);
+		assertTrue(rateLimiter.tryAcquire("A"));
+		assertFalse(rateLimiter.tryAcquire("A"));
+		rateLimiter.configure(new JsonObject().put("test.rate.limit", 1).put("test.rate.burst", 2));
+		assertTrue(rateLimiter.tryAcquire("A"));
+		assertTrue(rateLimiter.tryAcquire("A"));
+	}
+}
@@ -0,0 +1,99 @@
+package com.juant.roxxy.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Unit test for ShardRouter. Routing does not use the pools, the shards are created without them.
+ * @author Juan Tzun
+ *
+ */
+public class ShardRouterTest {
+
+	private static List<Shard> shards(int count) {
+		List<Shard> shards = new ArrayList<>();
+		for(int i = 0; i<count; i++) {
+			shards.add(new Shard("s"+i, i, null, null));
+		}
+		return shards;
+	}
+
+	@Test
+	public void routesInterleavedNumbersToTheirShard() {
+		List<Shard> shards = shards(3);
+		ShardRouter router = new ShardRouter("test", shards, new JsonObject().put("test.shard.stride", 8));
+		Set<Long> numbers = new HashSet<>();
+		for(Shard shard : shards) {
+			for(long sequence = 0; sequence<100; sequence++) {
+				long number = router.interleave(sequence, shard);
+				assertSame(shard, router.routeNumber(number));
+				assertSame(shard, router.routeNumber(String.valueOf(number)));
+				assertTrue(numbers.add(number));
+			}
+		}
+	}
+
+	@Test
+	public void raisesTheStrideToTheShardCount() {
+		List<Shard> shards = shards(3);
+		ShardRouter router = new ShardRouter("test", shards, new JsonObject());
+		assertEquals(1L, router.interleave(0, shards.get(0)));
+		assertEquals(3L, router.interleave(0, shards.get(2)));
+		assertEquals(4L, router.interleave(1, shards.get(0)));
+	}
+
+	@Test
+	public void rejectsNumbersWithoutShard() {
+		ShardRouter router = new ShardRouter("test", shards(2), new JsonObject().put("test.shard.stride", 4));
+		assertNull(router.routeNumber(0L));
+		assertNull(router.routeNumber(-1L));
+		assertNull(router.routeNumber(3L));
+		assertNull(router.routeNumber("abc"));
+		assertNull(router.routeNumber(""));
+	}
+
+	@Test
+	public void routesKeysConsistently() {
+		List<Shard> shards = shards(3);
+		ShardRouter router = new ShardRouter("test", shards, new JsonObject());
+		ShardRouter again = new ShardRouter("test", shards, new JsonObject());
+		Set<Shard> used = new HashSet<>();
+		for(int i = 0; i<1000; i++) {
+			String key = "D"+i;
+			assertSame(router.route(key), again.route(key));
+			used.add(router.route(key));
+		}
+		assertEquals(3, used.size());
+	}
+
+	@Test
+	public void movesOnlyTheKeysOfANewShard() {
+		List<Shard> shards = shards(3);
+		ShardRouter router = new ShardRouter("test", shards, new JsonObject());
+		List<Shard> more = new ArrayList<>(shards);
+		more.add(new Shard("s3", 3, null, null));
+		ShardRouter grown = new ShardRouter("test", more, new JsonObject());
+		int moved = 0;
+		for(int i = 0; i<1000; i++) {
+			String key = "D"+i;
+			Shard after = grown.route(key);
+			if(after!=router.route(key)) {
+				assertSame(more.get(3), after);
+				moved++;
+			}
+		}
+		assertNotEquals(0, moved);
+	}
+}
@@ -0,0 +1,81 @@
+package com.juant.roxxy.entity;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+/**
+ * Unit test for Money conversions.
+ * @author Juan Tzun
+ *
+ */
+public class MoneyTest {
+
+	@Test
+	public void parsesAmounts() {
+		assertEquals(1200L, Money.parse("12"));
+		assertEquals(1230L, Money.parse("12.3"));
+		assertEquals(1234L, Money.parse("12.34"));
+		assertEquals(-1234L, Money.parse("-12.34"));
+		assertEquals(1234L, Money.parse("+12.34"));
+		assertEquals(1234L, Money.parse("12.340"));
+		assertEquals(1200L, Money.parse("12."));
+		assertEquals(50L, Money.parse(".5"));
+		assertEquals(0L, Money.parse("0"));
+	}
+
+	@Test
+	public void parsesPartOfAnArray() {
+		char[] chars = "[12.34]".toCharArray();
+		assertEquals(1234L, Money.parse(chars, 1, 5));
+	}
+
+	@Test
+	public void rejectsMalformedAmounts() {
+		String[] values = {"", "-", "+", ".", "-.", "12.345", "1.2.3", "12a", "1e2", " 12"};
+		for(String value : values) {
+			try {
+				Money.parse(value);
+				throw new AssertionError("Parsed "+value);
+			} catch (NumberFormatException e) {
+				//Expected
+			}
+		}
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void rejectsOverflow() {
+		Money.parse("92233720368547758.08");
+	}
+
+	@Test
+	public void roundsDecimalsHalfUp() {
+		assertEquals(1234L, Money.fromDecimal(new BigDecimal("12.344")));
+		assertEquals(1235L, Money.fromDecimal(new BigDecimal("12.345")));
+		assertEquals(-1235L, Money.fromDecimal(new BigDecimal("-12.345")));
+		assertEquals(1200L, Money.fromDecimal(new BigDecimal("12")));
+	}
+
+	@Test
+	public void convertsToDecimal() {
+		assertEquals(new BigDecimal("12.34"), Money.toDecimal(1234L));
+		assertEquals(new BigDecimal("-0.05"), Money.toDecimal(-5L));
+		assertEquals("0.00", Money.format(0L));
+		assertEquals(1234L, Money.fromDecimal(Money.toDecimal(1234L)));
+	}
+
+	@Test
+	public void convertsBodyValues() {
+		assertEquals(1200L, Money.of(12));
+		assertEquals(1234L, Money.of(12.34));
+		assertEquals(1234L, Money.of("12.34"));
+		assertEquals(1234L, Money.of(new BigDecimal("12.34")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsOtherValues() {
+		Money.of(Boolean.TRUE);
+	}
+}